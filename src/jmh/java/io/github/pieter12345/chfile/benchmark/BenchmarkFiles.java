@@ -0,0 +1,84 @@
+package io.github.pieter12345.chfile.benchmark;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * Utility methods for generating, copying and deleting the file trees used by the benchmarks.
+ * @author P.J.S. Kools
+ */
+public class BenchmarkFiles {
+	
+	private BenchmarkFiles() {
+	}
+	
+	/**
+	 * Generates a file with the given size and random content.
+	 * @param file - The file to generate.
+	 * @param size - The size in bytes.
+	 * @param random - The random generator to generate the content with.
+	 * @throws IOException When an I/O error occurs while writing the file.
+	 */
+	public static void generateFile(Path file, int size, Random random) throws IOException {
+		byte[] content = new byte[size];
+		random.nextBytes(content);
+		Files.write(file, content);
+	}
+	
+	/**
+	 * Copies the given file tree.
+	 * @param source - The root of the file tree to copy.
+	 * @param target - The root to copy to.
+	 * @throws IOException When an I/O error occurs while copying.
+	 */
+	public static void copyTree(Path source, Path target) throws IOException {
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(target.resolve(source.relativize(dir)));
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.copy(file, target.resolve(source.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+	
+	/**
+	 * Deletes the given file tree if it exists.
+	 * @param root - The root of the file tree to delete.
+	 * @throws IOException When an I/O error occurs while deleting.
+	 */
+	public static void deleteTree(Path root) throws IOException {
+		if(!Files.exists(root)) {
+			return;
+		}
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if(e != null) {
+					throw e;
+				}
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
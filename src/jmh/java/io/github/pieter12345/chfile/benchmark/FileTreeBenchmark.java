@@ -0,0 +1,163 @@
+package io.github.pieter12345.chfile.benchmark;
+
+import com.laytonsmith.core.Security;
+import com.laytonsmith.core.constructs.CBoolean;
+import com.laytonsmith.core.constructs.CString;
+import com.laytonsmith.core.constructs.Target;
+import com.laytonsmith.core.environments.Environment;
+import com.laytonsmith.core.natives.interfaces.Mixed;
+
+import io.github.pieter12345.chfile.chfunctions.CHFileHandling.chf_copy;
+import io.github.pieter12345.chfile.chfunctions.CHFileHandling.chf_delete;
+import io.github.pieter12345.chfile.chfunctions.CHFileHandling.chf_directory_list;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for chf_copy, chf_delete and chf_directory_list on generated file trees of different shapes.
+ * Functions are called through their exec method with a minimal environment and security disabled.
+ * @author P.J.S. Kools
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileTreeBenchmark {
+	
+	@Param({"SMALL_FILES", "LARGE_FILES", "DEEP_NESTING"})
+	public TreeShape shape;
+	
+	private final chf_copy copyFunction = new chf_copy();
+	private final chf_delete deleteFunction = new chf_delete();
+	private final chf_directory_list directoryListFunction = new chf_directory_list();
+	
+	private Environment env;
+	private Path tempDir;
+	private Path tree;
+	private Mixed[] copyArgs;
+	private Mixed[] directoryListArgs;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		Security.setSecurityEnabled(false);
+		this.env = Environment.createEnvironment();
+		this.tempDir = Files.createTempDirectory("chfile-benchmark");
+		this.tree = this.tempDir.resolve("tree");
+		Files.createDirectory(this.tree);
+		this.shape.generate(this.tree);
+		this.copyArgs = new Mixed[] {str(this.tree), str(this.tempDir.resolve("copy")), CBoolean.TRUE};
+		this.directoryListArgs = new Mixed[] {str(this.tree)};
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		BenchmarkFiles.deleteTree(this.tempDir);
+	}
+	
+	@Benchmark
+	public Mixed copy() {
+		return this.copyFunction.exec(Target.UNKNOWN, this.env, this.copyArgs);
+	}
+	
+	@Benchmark
+	public Mixed delete(DeleteState state) {
+		return this.deleteFunction.exec(Target.UNKNOWN, this.env, state.deleteArgs);
+	}
+	
+	@Benchmark
+	public Mixed directoryList() {
+		return this.directoryListFunction.exec(Target.UNKNOWN, this.env, this.directoryListArgs);
+	}
+	
+	private static CString str(Path path) {
+		return new CString(path.toAbsolutePath().toString(), Target.UNKNOWN);
+	}
+	
+	/**
+	 * Provides a fresh copy of the file tree to delete for every invocation.
+	 */
+	@State(Scope.Thread)
+	public static class DeleteState {
+		
+		private Path target;
+		private Mixed[] deleteArgs;
+		
+		@Setup(Level.Invocation)
+		public void setup(FileTreeBenchmark benchmark) throws IOException {
+			this.target = benchmark.tempDir.resolve("delete");
+			BenchmarkFiles.deleteTree(this.target);
+			BenchmarkFiles.copyTree(benchmark.tree, this.target);
+			this.deleteArgs = new Mixed[] {str(this.target), CBoolean.TRUE};
+		}
+	}
+	
+	/**
+	 * The shapes of the generated file trees.
+	 */
+	public static enum TreeShape {
+		
+		/**
+		 * 2000 files of 1 KiB in a single directory.
+		 */
+		SMALL_FILES {
+			@Override
+			void generate(Path root) throws IOException {
+				Random random = new Random(0);
+				for(int i = 0; i < 2000; i++) {
+					BenchmarkFiles.generateFile(root.resolve("file" + i + ".txt"), 1024, random);
+				}
+			}
+		},
+		
+		/**
+		 * 4 files of 16 MiB in a single directory.
+		 */
+		LARGE_FILES {
+			@Override
+			void generate(Path root) throws IOException {
+				Random random = new Random(0);
+				for(int i = 0; i < 4; i++) {
+					BenchmarkFiles.generateFile(root.resolve("file" + i + ".bin"), 16 * 1024 * 1024, random);
+				}
+			}
+		},
+		
+		/**
+		 * 100 nested directories, each containing 2 files of 1 KiB.
+		 */
+		DEEP_NESTING {
+			@Override
+			void generate(Path root) throws IOException {
+				Random random = new Random(0);
+				Path dir = root;
+				for(int depth = 0; depth < 100; depth++) {
+					BenchmarkFiles.generateFile(dir.resolve("a.txt"), 1024, random);
+					BenchmarkFiles.generateFile(dir.resolve("b.txt"), 1024, random);
+					dir = Files.createDirectory(dir.resolve("dir" + depth));
+				}
+			}
+		};
+		
+		abstract void generate(Path root) throws IOException;
+	}
+}
@@ -0,0 +1,103 @@
+package io.github.pieter12345.chfile.benchmark;
+
+import com.laytonsmith.core.Security;
+import com.laytonsmith.core.constructs.CBoolean;
+import com.laytonsmith.core.constructs.CByteArray;
+import com.laytonsmith.core.constructs.CString;
+import com.laytonsmith.core.constructs.Target;
+import com.laytonsmith.core.environments.Environment;
+import com.laytonsmith.core.natives.interfaces.Mixed;
+
+import io.github.pieter12345.chfile.chfunctions.CHFileHandling.chf_write;
+import io.github.pieter12345.chfile.chfunctions.CHFileHandling.chf_write_binary;
+import io.github.pieter12345.chfile.chfunctions.CHFileHandling.chf_write_gzip_binary;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for chf_write, chf_write_binary and chf_write_gzip_binary, overwriting a file with content of
+ * different sizes.
+ * Functions are called through their exec method with a minimal environment and security disabled.
+ * @author P.J.S. Kools
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBenchmark {
+	
+	@Param({"1024", "1048576"})
+	public int size;
+	
+	private final chf_write writeFunction = new chf_write();
+	private final chf_write_binary writeBinaryFunction = new chf_write_binary();
+	private final chf_write_gzip_binary writeGzipBinaryFunction = new chf_write_gzip_binary();
+	
+	private Environment env;
+	private Path tempDir;
+	private Mixed[] writeArgs;
+	private Mixed[] writeBinaryArgs;
+	private Mixed[] writeGzipBinaryArgs;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		Security.setSecurityEnabled(false);
+		this.env = Environment.createEnvironment();
+		this.tempDir = Files.createTempDirectory("chfile-benchmark");
+		char[] text = new char[this.size];
+		Arrays.fill(text, 'a');
+		byte[] bytes = new byte[this.size];
+		new Random(0).nextBytes(bytes);
+		this.writeArgs = new Mixed[] {str(this.tempDir.resolve("write.txt")),
+				new CString(new String(text), Target.UNKNOWN), new CString("OVERWRITE", Target.UNKNOWN)};
+		this.writeBinaryArgs = new Mixed[] {str(this.tempDir.resolve("write.bin")),
+				CByteArray.wrap(bytes, Target.UNKNOWN), CBoolean.TRUE};
+		this.writeGzipBinaryArgs = new Mixed[] {str(this.tempDir.resolve("write.gz")),
+				CByteArray.wrap(bytes, Target.UNKNOWN), CBoolean.TRUE};
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		BenchmarkFiles.deleteTree(this.tempDir);
+	}
+	
+	@Benchmark
+	public Mixed write() {
+		return this.writeFunction.exec(Target.UNKNOWN, this.env, this.writeArgs);
+	}
+	
+	@Benchmark
+	public Mixed writeBinary() {
+		return this.writeBinaryFunction.exec(Target.UNKNOWN, this.env, this.writeBinaryArgs);
+	}
+	
+	@Benchmark
+	public Mixed writeGzipBinary() {
+		return this.writeGzipBinaryFunction.exec(Target.UNKNOWN, this.env, this.writeGzipBinaryArgs);
+	}
+	
+	private static CString str(Path path) {
+		return new CString(path.toAbsolutePath().toString(), Target.UNKNOWN);
+	}
+}
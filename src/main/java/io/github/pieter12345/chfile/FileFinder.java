@@ -0,0 +1,296 @@
+package io.github.pieter12345.chfile;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches a directory tree for files matching a name pattern and optional size and last modified time ranges.
+ * The subdirectories of the root directory are searched in parallel by a bounded amount of workers per search, and
+ * excluded or too deep directories are pruned before they are entered. Matches are handed to a {@link MatchHandler}
+ * on the calling thread while the search is still running, so the full result set never has to be held in memory.
+ * @author P.J.S. Kools
+ */
+public class FileFinder {
+	
+	private static final int QUEUE_CAPACITY = 1024;
+	private static final int PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
+	private static final Path END_MARKER = Paths.get("");
+	
+	/**
+	 * Executor for the search workers. Workers block while the queue of matches is full, so they get their own threads
+	 * rather than sharing a bounded pool. This way, a handler can start another search without deadlocking.
+	 */
+	private static final ExecutorService SEARCH_EXECUTOR = Executors.newCachedThreadPool((Runnable runnable) -> {
+		Thread thread = new Thread(runnable, "CHFile-Find");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private final Path root;
+	private final PathMatcher matcher;
+	private final boolean matchRelativePath;
+	private final List<PathMatcher> excludedDirMatchers = new ArrayList<>();
+	private long minSize = 0;
+	private long maxSize = Long.MAX_VALUE;
+	private long minLastModified = Long.MIN_VALUE;
+	private long maxLastModified = Long.MAX_VALUE;
+	private int maxDepth = Integer.MAX_VALUE;
+	
+	private volatile boolean stopped = false;
+	
+	/**
+	 * Shuts down the executor of the search workers, letting running searches finish.
+	 * Called when the extension is unloaded, so that its threads do not outlive it.
+	 */
+	public static void shutdown() {
+		SEARCH_EXECUTOR.shutdown();
+	}
+	
+	/**
+	 * Creates a new {@link FileFinder}.
+	 * @param root - The directory to search in.
+	 * @param matcher - The matcher that file names or paths must match.
+	 * @param matchRelativePath - If {@code true}, the matcher is applied to the path relative to the root directory.
+	 * If {@code false}, the matcher is applied to the file name only.
+	 */
+	public FileFinder(Path root, PathMatcher matcher, boolean matchRelativePath) {
+		this.root = root.toAbsolutePath().normalize();
+		this.matcher = matcher;
+		this.matchRelativePath = matchRelativePath;
+	}
+	
+	/**
+	 * Sets the range in which the size of a matching file must be.
+	 * @param minSize - The minimum size in bytes (inclusive).
+	 * @param maxSize - The maximum size in bytes (inclusive).
+	 */
+	public void setSizeRange(long minSize, long maxSize) {
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * Sets the range in which the last modified time of a matching file must be.
+	 * @param minLastModified - The minimum last modified time in milliseconds since epoch (inclusive).
+	 * @param maxLastModified - The maximum last modified time in milliseconds since epoch (inclusive).
+	 */
+	public void setLastModifiedRange(long minLastModified, long maxLastModified) {
+		this.minLastModified = minLastModified;
+		this.maxLastModified = maxLastModified;
+	}
+	
+	/**
+	 * Sets the maximum depth to search, where files directly in the root directory are at depth 1.
+	 * @param maxDepth - The maximum depth.
+	 */
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+	
+	/**
+	 * Adds a matcher for directory names that should not be searched.
+	 * @param excludedDirMatcher - The matcher.
+	 */
+	public void addExcludedDir(PathMatcher excludedDirMatcher) {
+		this.excludedDirMatchers.add(excludedDirMatcher);
+	}
+	
+	/**
+	 * Searches for matching files. This method blocks until the search has completed or has been stopped.
+	 * Files or directories that cannot be accessed are skipped.
+	 * @param handler - The handler to pass matching files to. This handler is called from the calling thread.
+	 * @throws IOException When an I/O error occurs while listing the root directory.
+	 * @throws InterruptedException When the calling thread is interrupted while waiting for the search.
+	 */
+	public void find(MatchHandler handler) throws IOException, InterruptedException {
+		this.stopped = false;
+		if(this.maxDepth < 1) {
+			return;
+		}
+		
+		// List the root directory, collecting matching files and the subdirectories to search.
+		List<Path> rootMatches = new ArrayList<>();
+		Queue<Path> pendingDirs = new ConcurrentLinkedQueue<>();
+		try(DirectoryStream<Path> dirStream = Files.newDirectoryStream(this.root)) {
+			for(Path path : dirStream) {
+				BasicFileAttributes attrs;
+				try {
+					attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				} catch (IOException e) {
+					continue; // Skip files and directories that cannot be accessed.
+				}
+				if(attrs.isDirectory()) {
+					if(this.maxDepth > 1 && !this.isExcludedDir(path)) {
+						pendingDirs.add(path);
+					}
+				} else if(this.matches(path, attrs)) {
+					rootMatches.add(path);
+				}
+			}
+		}
+		
+		BlockingQueue<Path> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		List<Future<?>> futures = new ArrayList<>();
+		boolean completed = false;
+		try {
+			
+			// Start the workers, which take subdirectories from the pending directories until none are left.
+			int workerCount = Math.min(PARALLELISM, pendingDirs.size());
+			for(int i = 0; i < workerCount; i++) {
+				futures.add(SEARCH_EXECUTOR.submit(() -> this.searchSubtrees(pendingDirs, queue)));
+			}
+			
+			// Handle the files in the root directory.
+			for(Path path : rootMatches) {
+				if(this.stopped || !handler.handle(path)) {
+					this.stopped = true;
+					break;
+				}
+			}
+			
+			// Pass matches to the handler until all workers have completed.
+			// Every worker puts an end marker in the queue when it completes, also when it has been stopped.
+			int activeWorkers = futures.size();
+			while(activeWorkers > 0) {
+				Path path = queue.take();
+				if(path == END_MARKER) {
+					activeWorkers--;
+				} else if(!this.stopped && !handler.handle(path)) {
+					this.stopped = true;
+				}
+			}
+			completed = true;
+		} finally {
+			if(!completed) {
+				
+				// Abort the workers when the handler threw an exception or when the calling thread was interrupted.
+				this.stopped = true;
+				for(Future<?> future : futures) {
+					future.cancel(true);
+				}
+				queue.clear();
+			}
+		}
+		
+		// Rethrow search errors.
+		for(Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				throw (cause instanceof IOException ? (IOException) cause : new IOException(cause));
+			}
+		}
+	}
+	
+	private Void searchSubtrees(Queue<Path> pendingDirs, BlockingQueue<Path> queue)
+			throws IOException, InterruptedException {
+		try {
+			Path subtreeRoot;
+			while(!this.stopped && (subtreeRoot = pendingDirs.poll()) != null) {
+				this.searchSubtree(subtreeRoot, queue);
+			}
+		} finally {
+			
+			// The caller keeps draining the queue until it has received all end markers, so this cannot block forever.
+			// When the search is aborted, the worker is interrupted instead.
+			queue.put(END_MARKER);
+		}
+		return null;
+	}
+	
+	private void searchSubtree(Path subtreeRoot, BlockingQueue<Path> queue) throws IOException {
+		Files.walkFileTree(subtreeRoot, EnumSet.noneOf(FileVisitOption.class), this.maxDepth - 1,
+				new SimpleFileVisitor<Path>() {
+			
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if(FileFinder.this.stopped) {
+					return FileVisitResult.TERMINATE;
+				}
+				return (FileFinder.this.isExcludedDir(dir)
+						? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE);
+			}
+			
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if(FileFinder.this.stopped) {
+					return FileVisitResult.TERMINATE;
+				}
+				if(FileFinder.this.matches(file, attrs)) {
+					try {
+						queue.put(file);
+					} catch (InterruptedException e) {
+						throw new InterruptedIOException();
+					}
+				}
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				return FileVisitResult.CONTINUE; // Skip files and directories that cannot be accessed.
+			}
+			
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+	
+	private boolean isExcludedDir(Path dir) {
+		Path name = dir.getFileName();
+		for(PathMatcher excludedDirMatcher : this.excludedDirMatchers) {
+			if(name != null && excludedDirMatcher.matches(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private boolean matches(Path file, BasicFileAttributes attrs) {
+		if(attrs.isDirectory() || attrs.size() < this.minSize || attrs.size() > this.maxSize) {
+			return false;
+		}
+		long lastModified = attrs.lastModifiedTime().toMillis();
+		if(lastModified < this.minLastModified || lastModified > this.maxLastModified) {
+			return false;
+		}
+		return this.matcher.matches(this.matchRelativePath ? this.root.relativize(file) : file.getFileName());
+	}
+	
+	/**
+	 * Handler for files found by a {@link FileFinder}.
+	 */
+	public static interface MatchHandler {
+		
+		/**
+		 * Handles a matching file.
+		 * @param file - The matching file.
+		 * @return {@code true} to continue searching, {@code false} to stop the search.
+		 */
+		boolean handle(Path file);
+	}
+}
@@ -0,0 +1,271 @@
+package io.github.pieter12345.chfile;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long running file operation that runs in the background, keeping track of its progress.
+ * Jobs can be cancelled cooperatively, in which case the job stops the next time it calls {@link #checkCancelled()}.
+ * Finished jobs are kept for {@link #FINISHED_JOB_RETENTION_MILLIS} milliseconds so that their result can be queried.
+ * @author P.J.S. Kools
+ */
+public class FileJob {
+	
+	/**
+	 * The time in milliseconds for which finished jobs are kept.
+	 */
+	public static final long FINISHED_JOB_RETENTION_MILLIS = 10 * 60 * 1000;
+	
+	private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+	private static final Map<Integer, FileJob> JOBS = new ConcurrentHashMap<>();
+	private static final ExecutorService JOB_EXECUTOR = Executors.newCachedThreadPool((Runnable runnable) -> {
+		Thread thread = new Thread(runnable, "CHFile-Job");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private final int id;
+	private final String type;
+	private final long startTime = System.currentTimeMillis();
+	private volatile long endTime = -1;
+	private volatile State state = State.RUNNING;
+	private volatile boolean cancelRequested = false;
+	private volatile boolean abandoned = false;
+	private volatile String errorMessage = null;
+	private final AtomicLong totalFiles = new AtomicLong();
+	private final AtomicLong totalBytes = new AtomicLong();
+	private final AtomicLong filesDone = new AtomicLong();
+	private final AtomicLong bytesDone = new AtomicLong();
+	
+	private FileJob(int id, String type) {
+		this.id = id;
+		this.type = type;
+	}
+	
+	/**
+	 * Creates a new job and starts running it in the background.
+	 * @param type - The job type, used for status reporting.
+	 * @param task - The task to run.
+	 * @param completionHandler - The handler to call from the job thread when the job has finished, or {@code null}.
+	 * @return The created job.
+	 */
+	public static FileJob submit(String type, Task task, CompletionHandler completionHandler) {
+		removeExpiredJobs();
+		FileJob job = new FileJob(NEXT_ID.getAndIncrement(), type);
+		JOBS.put(job.id, job);
+		JOB_EXECUTOR.execute(() -> {
+			try {
+				job.checkCancelled();
+				task.run(job);
+				job.state = State.COMPLETED;
+			} catch (CancellationException e) {
+				job.state = State.CANCELLED;
+			} catch (Exception e) {
+				job.errorMessage = e.getMessage();
+				job.state = State.FAILED;
+			} finally {
+				job.endTime = System.currentTimeMillis();
+				if(completionHandler != null) {
+					completionHandler.onComplete(job);
+				}
+			}
+		});
+		return job;
+	}
+	
+	/**
+	 * Gets the job with the given id.
+	 * @param id - The job id.
+	 * @return The job, or {@code null} if no such job exists or if it has finished too long ago.
+	 */
+	public static FileJob get(int id) {
+		return JOBS.get(id);
+	}
+	
+	/**
+	 * Cancels all running jobs without notifying the callers that started them, for example because the extension is
+	 * being unloaded. The completion handlers of these jobs are still called, but {@link #isAbandoned()} returns
+	 * {@code true} for them.
+	 */
+	public static void cancelAll() {
+		for(FileJob job : JOBS.values()) {
+			job.abandoned = true;
+			job.cancel();
+		}
+	}
+	
+	/**
+	 * Shuts down the executor of the jobs, letting running jobs finish. Jobs can no longer be submitted afterwards.
+	 * Called when the extension is unloaded, after {@link #cancelAll()}, so that its threads do not outlive it.
+	 */
+	public static void shutdown() {
+		JOB_EXECUTOR.shutdown();
+	}
+	
+	private static void removeExpiredJobs() {
+		long expireTime = System.currentTimeMillis() - FINISHED_JOB_RETENTION_MILLIS;
+		JOBS.values().removeIf((FileJob job) -> job.endTime != -1 && job.endTime < expireTime);
+	}
+	
+	/**
+	 * Requests this job to be cancelled.
+	 * @return {@code true} if the job was running, {@code false} if it had already finished.
+	 */
+	public boolean cancel() {
+		this.cancelRequested = true;
+		return this.state == State.RUNNING;
+	}
+	
+	/**
+	 * Checks whether cancellation of this job has been requested. Tasks should call this between files.
+	 * @throws CancellationException If cancellation of this job has been requested.
+	 */
+	public void checkCancelled() throws CancellationException {
+		if(this.cancelRequested) {
+			throw new CancellationException();
+		}
+	}
+	
+	/**
+	 * Adds the given amounts to the total amount of work of this job.
+	 * @param files - The amount of files.
+	 * @param bytes - The amount of bytes.
+	 */
+	public void addTotal(long files, long bytes) {
+		this.totalFiles.addAndGet(files);
+		this.totalBytes.addAndGet(bytes);
+	}
+	
+	/**
+	 * Marks a file as done.
+	 * @param bytes - The size of the file.
+	 */
+	public void fileDone(long bytes) {
+		this.filesDone.incrementAndGet();
+		this.bytesDone.addAndGet(bytes);
+	}
+	
+	/**
+	 * Checks whether this job has been cancelled by {@link #cancelAll()}, in which case its caller should not be
+	 * notified of its completion.
+	 * @return {@code true} if this job has been abandoned, {@code false} otherwise.
+	 */
+	public boolean isAbandoned() {
+		return this.abandoned;
+	}
+	
+	public int getId() {
+		return this.id;
+	}
+	
+	public String getType() {
+		return this.type;
+	}
+	
+	public State getState() {
+		return this.state;
+	}
+	
+	/**
+	 * Gets the error message of this job.
+	 * @return The error message if this job has failed, or {@code null} otherwise.
+	 */
+	public String getErrorMessage() {
+		return this.errorMessage;
+	}
+	
+	public long getTotalFiles() {
+		return this.totalFiles.get();
+	}
+	
+	public long getTotalBytes() {
+		return this.totalBytes.get();
+	}
+	
+	public long getFilesDone() {
+		return this.filesDone.get();
+	}
+	
+	public long getBytesDone() {
+		return this.bytesDone.get();
+	}
+	
+	/**
+	 * Gets the time this job has been running for.
+	 * @return The elapsed time in milliseconds.
+	 */
+	public long getElapsedMillis() {
+		long endTime = this.endTime;
+		return (endTime == -1 ? System.currentTimeMillis() : endTime) - this.startTime;
+	}
+	
+	/**
+	 * Gets the average throughput of this job.
+	 * @return The throughput in bytes per second.
+	 */
+	public double getThroughput() {
+		long elapsedMillis = this.getElapsedMillis();
+		return (elapsedMillis == 0 ? 0d : this.bytesDone.get() * 1000d / elapsedMillis);
+	}
+	
+	/**
+	 * Gets the estimated remaining time of this job, based on the bytes done so far.
+	 * When no bytes are involved, the estimation is based on the files done so far.
+	 * @return The estimated remaining time in milliseconds, or -1 if no estimation can be made yet.
+	 */
+	public long getEtaMillis() {
+		if(this.state != State.RUNNING) {
+			return 0;
+		}
+		long total = this.totalBytes.get();
+		long done = this.bytesDone.get();
+		if(total == 0) {
+			total = this.totalFiles.get();
+			done = this.filesDone.get();
+		}
+		if(done == 0) {
+			return -1;
+		}
+		return Math.max(0, (long) ((double) this.getElapsedMillis() * (total - done) / done));
+	}
+	
+	/**
+	 * Job states.
+	 */
+	public static enum State {
+		RUNNING,
+		COMPLETED,
+		CANCELLED,
+		FAILED;
+	}
+	
+	/**
+	 * The work performed by a job.
+	 */
+	public static interface Task {
+		
+		/**
+		 * Performs the work of the job, calling {@link FileJob#checkCancelled()} between files.
+		 * @param job - The job.
+		 * @throws Exception When the job fails.
+		 */
+		void run(FileJob job) throws Exception;
+	}
+	
+	/**
+	 * Handler for finished jobs.
+	 */
+	public static interface CompletionHandler {
+		
+		/**
+		 * Called when the given job has finished.
+		 * @param job - The finished job.
+		 */
+		void onComplete(FileJob job);
+	}
+}
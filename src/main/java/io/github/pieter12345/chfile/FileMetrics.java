@@ -0,0 +1,298 @@
+package io.github.pieter12345.chfile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Always-on metrics for all CHFile functions, keeping call counts, error counts, bytes read and written and a latency
+ * histogram per function. Recording only updates striped counters and atomic histogram buckets, so it does not lock.
+ * Metrics can optionally be appended to a file periodically.
+ * @author P.J.S. Kools
+ */
+public class FileMetrics {
+	
+	private static final FileMetrics INSTANCE = new FileMetrics();
+	private static final ThreadLocal<FunctionMetrics> CURRENT_FUNCTION = new ThreadLocal<>();
+	private static final ScheduledExecutorService DUMP_EXECUTOR =
+			Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+				Thread thread = new Thread(runnable, "CHFile-Metrics");
+				thread.setDaemon(true);
+				return thread;
+			});
+	
+	private final Map<String, FunctionMetrics> functionMetrics = new ConcurrentHashMap<>();
+	private ScheduledFuture<?> dumpFuture = null;
+	private Path dumpFile = null;
+	private long dumpIntervalSeconds = 0;
+	
+	/**
+	 * Gets the global metrics instance.
+	 * @return The metrics.
+	 */
+	public static FileMetrics getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Gets the metrics of the function with the given name, creating them if they do not exist yet.
+	 * @param functionName - The function name.
+	 * @return The function metrics.
+	 */
+	public FunctionMetrics getFunctionMetrics(String functionName) {
+		return this.functionMetrics.computeIfAbsent(functionName, FunctionMetrics::new);
+	}
+	
+	/**
+	 * Sets the metrics of the function that is executing on the current thread, to which bytes read and written are
+	 * attributed.
+	 * @param metrics - The function metrics, or {@code null} when no function is executing.
+	 * @return The previously set function metrics, or {@code null} if none were set.
+	 */
+	public static FunctionMetrics setCurrentFunction(FunctionMetrics metrics) {
+		FunctionMetrics previous = CURRENT_FUNCTION.get();
+		CURRENT_FUNCTION.set(metrics);
+		return previous;
+	}
+	
+	/**
+	 * Gets the metrics of the function that is executing on the current thread. Tasks that run on other threads on
+	 * behalf of a function should set these using {@link #setCurrentFunction(FunctionMetrics)}, so that their bytes
+	 * read and written are attributed to that function.
+	 * @return The function metrics, or {@code null} when no function is executing.
+	 */
+	public static FunctionMetrics getCurrentFunction() {
+		return CURRENT_FUNCTION.get();
+	}
+	
+	/**
+	 * Adds the given amount of bytes to the bytes read by the function that is executing on the current thread.
+	 * Does nothing when no function is executing on the current thread.
+	 * @param bytes - The amount of bytes.
+	 */
+	public static void addBytesRead(long bytes) {
+		FunctionMetrics metrics = CURRENT_FUNCTION.get();
+		if(metrics != null) {
+			metrics.bytesRead.add(bytes);
+		}
+	}
+	
+	/**
+	 * Adds the given amount of bytes to the bytes written by the function that is executing on the current thread.
+	 * Does nothing when no function is executing on the current thread.
+	 * @param bytes - The amount of bytes.
+	 */
+	public static void addBytesWritten(long bytes) {
+		FunctionMetrics metrics = CURRENT_FUNCTION.get();
+		if(metrics != null) {
+			metrics.bytesWritten.add(bytes);
+		}
+	}
+	
+	/**
+	 * Takes a snapshot of the metrics of all functions that have been called at least once.
+	 * @param reset - If {@code true}, the metrics are reset after taking the snapshot.
+	 * @return The snapshots, sorted by function name.
+	 */
+	public List<Snapshot> snapshot(boolean reset) {
+		List<Snapshot> snapshots = new ArrayList<>();
+		for(FunctionMetrics metrics : new TreeMap<>(this.functionMetrics).values()) {
+			Snapshot snapshot = metrics.snapshot(reset);
+			if(snapshot.count > 0) {
+				snapshots.add(snapshot);
+			}
+		}
+		return snapshots;
+	}
+	
+	/**
+	 * Configures the periodic dump of all metrics to a file. Every dump appends one tab separated line per function
+	 * that has been called since the start, without resetting the metrics.
+	 * @param dumpFile - The file to append to, or {@code null} to disable the periodic dump.
+	 * @param intervalSeconds - The interval in seconds.
+	 */
+	public synchronized void configureDump(Path dumpFile, long intervalSeconds) {
+		if(this.dumpFuture != null) {
+			this.dumpFuture.cancel(false);
+			this.dumpFuture = null;
+		}
+		this.dumpFile = dumpFile;
+		this.dumpIntervalSeconds = (dumpFile == null ? 0 : intervalSeconds);
+		if(dumpFile != null) {
+			this.dumpFuture = DUMP_EXECUTOR.scheduleAtFixedRate(() -> {
+				try {
+					this.dump(dumpFile);
+				} catch (IOException e) {
+					// Ignore. The dump will be attempted again on the next interval.
+				}
+			}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+	
+	/**
+	 * Shuts down the executor of the periodic dump. The dump can no longer be configured afterwards.
+	 * Called when the extension is unloaded, after disabling the dump, so that its thread does not outlive it.
+	 */
+	public static void shutdown() {
+		DUMP_EXECUTOR.shutdown();
+	}
+	
+	public synchronized Path getDumpFile() {
+		return this.dumpFile;
+	}
+	
+	public synchronized long getDumpIntervalSeconds() {
+		return this.dumpIntervalSeconds;
+	}
+	
+	private void dump(Path file) throws IOException {
+		StringBuilder str = new StringBuilder();
+		if(!Files.exists(file)) {
+			str.append("time\tfunction\tcount\terrors\tbytesread\tbyteswritten\tmean\tp50\tp99\tmax\n");
+		}
+		long time = System.currentTimeMillis();
+		for(Snapshot snapshot : this.snapshot(false)) {
+			str.append(time).append('\t').append(snapshot.functionName)
+					.append('\t').append(snapshot.count).append('\t').append(snapshot.errors)
+					.append('\t').append(snapshot.bytesRead).append('\t').append(snapshot.bytesWritten)
+					.append('\t').append(snapshot.meanNanos).append('\t').append(snapshot.p50Nanos)
+					.append('\t').append(snapshot.p99Nanos).append('\t').append(snapshot.maxNanos).append('\n');
+		}
+		Files.write(file, str.toString().getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+	
+	/**
+	 * The metrics of a single function.
+	 * Latencies are recorded in a log-linear histogram with {@link #SUB_BUCKETS} buckets per power of two, so that
+	 * percentiles have a relative error of at most 1 / {@link #SUB_BUCKETS}.
+	 */
+	public static class FunctionMetrics {
+		
+		private static final int SUB_BUCKET_BITS = 3;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+		private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+		
+		private final String functionName;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAdder bytesRead = new LongAdder();
+		private final LongAdder bytesWritten = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+		
+		private FunctionMetrics(String functionName) {
+			this.functionName = functionName;
+		}
+		
+		/**
+		 * Records a function call.
+		 * @param nanos - The duration of the call in nanoseconds.
+		 * @param success - {@code false} if the call has thrown an exception, {@code true} otherwise.
+		 */
+		public void record(long nanos, boolean success) {
+			nanos = Math.max(0, nanos);
+			this.count.increment();
+			if(!success) {
+				this.errors.increment();
+			}
+			this.totalNanos.add(nanos);
+			this.maxNanos.accumulate(nanos);
+			this.buckets.incrementAndGet(getBucketIndex(nanos));
+		}
+		
+		private Snapshot snapshot(boolean reset) {
+			long[] bucketCounts = new long[BUCKET_COUNT];
+			long histogramCount = 0;
+			for(int i = 0; i < BUCKET_COUNT; i++) {
+				bucketCounts[i] = (reset ? this.buckets.getAndSet(i, 0) : this.buckets.get(i));
+				histogramCount += bucketCounts[i];
+			}
+			long count = (reset ? this.count.sumThenReset() : this.count.sum());
+			long totalNanos = (reset ? this.totalNanos.sumThenReset() : this.totalNanos.sum());
+			return new Snapshot(this.functionName, count,
+					(reset ? this.errors.sumThenReset() : this.errors.sum()),
+					(reset ? this.bytesRead.sumThenReset() : this.bytesRead.sum()),
+					(reset ? this.bytesWritten.sumThenReset() : this.bytesWritten.sum()),
+					(count == 0 ? 0 : totalNanos / count),
+					getPercentile(bucketCounts, histogramCount, 0.50),
+					getPercentile(bucketCounts, histogramCount, 0.99),
+					(reset ? this.maxNanos.getThenReset() : this.maxNanos.get()));
+		}
+		
+		private static int getBucketIndex(long value) {
+			if(value < SUB_BUCKETS) {
+				return (int) value;
+			}
+			int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+			return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+		}
+		
+		private static long getBucketMidpoint(int index) {
+			if(index < SUB_BUCKETS) {
+				return index;
+			}
+			int shift = index / SUB_BUCKETS - 1;
+			long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+			return lowerBound + ((1L << shift) >>> 1);
+		}
+		
+		private static long getPercentile(long[] bucketCounts, long totalCount, double percentile) {
+			if(totalCount == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(totalCount * percentile));
+			long seen = 0;
+			for(int i = 0; i < bucketCounts.length; i++) {
+				seen += bucketCounts[i];
+				if(seen >= rank) {
+					return getBucketMidpoint(i);
+				}
+			}
+			return getBucketMidpoint(bucketCounts.length - 1);
+		}
+	}
+	
+	/**
+	 * A snapshot of the metrics of a single function. Durations are in nanoseconds.
+	 */
+	public static class Snapshot {
+		public final String functionName;
+		public final long count;
+		public final long errors;
+		public final long bytesRead;
+		public final long bytesWritten;
+		public final long meanNanos;
+		public final long p50Nanos;
+		public final long p99Nanos;
+		public final long maxNanos;
+		
+		private Snapshot(String functionName, long count, long errors, long bytesRead, long bytesWritten,
+				long meanNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+			this.functionName = functionName;
+			this.count = count;
+			this.errors = errors;
+			this.bytesRead = bytesRead;
+			this.bytesWritten = bytesWritten;
+			this.meanNanos = meanNanos;
+			this.p50Nanos = p50Nanos;
+			this.p99Nanos = p99Nanos;
+			this.maxNanos = maxNanos;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package io.github.pieter12345.chfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A byte-size-bounded least-recently-used cache for the contents of small files.
+ * Entries are keyed by normalized absolute path and are validated against the file's last modified time and size
+ * on every lookup, so external changes to a file are never hidden by the cache.
+ * Every invalidation increments a generation counter, and a read only caches what it has read if no invalidation has
+ * happened since it started. This prevents a read that races with a CHFile write from caching the old contents.
+ * The cache is disabled until a maximum size is set.
+ * @author P.J.S. Kools
+ */
+public class FileReadCache {
+	
+	private static final FileReadCache INSTANCE = new FileReadCache();
+	
+	private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long maxBytes = 0;
+	private long maxFileSize = 0;
+	private long residentBytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private volatile long generation = 0;
+	
+	/**
+	 * Gets the global read cache instance.
+	 * @return The read cache.
+	 */
+	public static FileReadCache getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Sets the maximum size of this cache and clears it.
+	 * @param maxBytes - The maximum total amount of cached bytes. A value of 0 disables the cache.
+	 * @param maxFileSize - The maximum size of a single file to cache. Larger files are always read from disk.
+	 */
+	public synchronized void configure(long maxBytes, long maxFileSize) {
+		this.maxBytes = Math.max(0, maxBytes);
+		this.maxFileSize = Math.max(0, Math.min(maxFileSize, this.maxBytes));
+		this.clear();
+	}
+	
+	/**
+	 * Checks whether this cache is enabled.
+	 * @return {@code true} if this cache is enabled, {@code false} otherwise.
+	 */
+	public synchronized boolean isEnabled() {
+		return this.maxBytes > 0;
+	}
+	
+	/**
+	 * Reads all bytes from the given file. When enabled, the contents are served from the cache if the file has not
+	 * changed since it was cached, and are cached otherwise.
+	 * The returned array is shared with the cache and should not be modified.
+	 * @param file - The file to read.
+	 * @return The contents of the file.
+	 * @throws IOException When an I/O error occurs while reading the file.
+	 */
+	public byte[] read(File file) throws IOException {
+		Path path = getKey(file);
+		if(!this.isEnabled()) {
+			return Files.readAllBytes(path);
+		}
+		
+		// Return the cached contents if they are still valid.
+		long generation = this.generation;
+		BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+		long lastModified = attrs.lastModifiedTime().toMillis();
+		synchronized(this) {
+			Entry entry = this.entries.get(path);
+			if(entry != null) {
+				if(entry.lastModified == lastModified && entry.content.length == attrs.size()) {
+					this.hits++;
+					return entry.content;
+				}
+				this.remove(path);
+			}
+			this.misses++;
+		}
+		
+		// Read the file and cache it if it is small enough.
+		// The attributes are obtained before reading, so a file that changes while being read is invalidated later.
+		// Don't cache the contents if an invalidation happened since the read started, as they might be outdated.
+		byte[] content = Files.readAllBytes(path);
+		if(content.length == attrs.size()) {
+			synchronized(this) {
+				if(content.length <= this.maxFileSize && this.generation == generation) {
+					this.remove(path);
+					this.entries.put(path, new Entry(content, lastModified));
+					this.residentBytes += content.length;
+					this.evict();
+				}
+			}
+		}
+		return content;
+	}
+	
+	/**
+	 * Removes the given file from the cache. If the file is a directory, all cached files within it are removed.
+	 * @param file - The file or directory to invalidate.
+	 */
+	public synchronized void invalidate(File file) {
+		this.generation++;
+		if(this.entries.isEmpty()) {
+			return;
+		}
+		Path path = getKey(file);
+		this.remove(path);
+		for(Iterator<Map.Entry<Path, Entry>> it = this.entries.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Path, Entry> entry = it.next();
+			if(entry.getKey().startsWith(path)) {
+				this.residentBytes -= entry.getValue().content.length;
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Removes all entries from the cache and resets the statistics.
+	 */
+	public synchronized void clear() {
+		this.generation++;
+		this.entries.clear();
+		this.residentBytes = 0;
+		this.hits = 0;
+		this.misses = 0;
+	}
+	
+	public synchronized long getMaxBytes() {
+		return this.maxBytes;
+	}
+	
+	public synchronized long getMaxFileSize() {
+		return this.maxFileSize;
+	}
+	
+	public synchronized long getResidentBytes() {
+		return this.residentBytes;
+	}
+	
+	public synchronized int getEntryCount() {
+		return this.entries.size();
+	}
+	
+	public synchronized long getHits() {
+		return this.hits;
+	}
+	
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+	
+	/**
+	 * Gets the ratio of reads that were served from the cache.
+	 * @return The hit ratio in range [0, 1], or 0 if no reads have been performed.
+	 */
+	public synchronized double getHitRatio() {
+		long total = this.hits + this.misses;
+		return (total == 0 ? 0d : (double) this.hits / total);
+	}
+	
+	private void remove(Path path) {
+		Entry entry = this.entries.remove(path);
+		if(entry != null) {
+			this.residentBytes -= entry.content.length;
+		}
+	}
+	
+	private void evict() {
+		Iterator<Entry> it = this.entries.values().iterator();
+		while(it.hasNext() && this.residentBytes > this.maxBytes) {
+			this.residentBytes -= it.next().content.length;
+			it.remove();
+		}
+	}
+	
+	private static Path getKey(File file) {
+		return file.toPath().toAbsolutePath().normalize();
+	}
+	
+	private static class Entry {
+		private final byte[] content;
+		private final long lastModified;
+		
+		private Entry(byte[] content, long lastModified) {
+			this.content = content;
+			this.lastModified = lastModified;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package io.github.pieter12345.chfile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Follows a growing file, passing complete lines that are appended to it to a {@link LineHandler} in batches.
+ * The file is polled periodically, and only the bytes after the current offset are read using positional reads.
+ * Truncation is detected by the file size shrinking below the current offset, after which reading restarts at the
+ * start of the file. Rotation is detected by the file key (the inode on Unix-like systems) changing, after which the
+ * remaining lines of the old file are passed to the handler before the new file is followed from its start.
+ * @author P.J.S. Kools
+ */
+public class FileTailer {
+	
+	/**
+	 * The interval in milliseconds at which followed files are polled.
+	 */
+	public static final long POLL_INTERVAL_MILLIS = 250;
+	
+	/**
+	 * The maximum amount of bytes that is read per batch. Lines longer than this are split.
+	 */
+	public static final int MAX_BATCH_BYTES = 1024 * 1024;
+	
+	private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+	private static final Map<Integer, FileTailer> TAILERS = new ConcurrentHashMap<>();
+	private static final ScheduledExecutorService POLL_EXECUTOR =
+			Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+				Thread thread = new Thread(runnable, "CHFile-Tail");
+				thread.setDaemon(true);
+				return thread;
+			});
+	
+	private final int id;
+	private final Path path;
+	private final LineHandler handler;
+	private FileChannel channel = null;
+	private Object fileKey = null;
+	private long offset;
+	private ScheduledFuture<?> pollFuture = null;
+	private boolean stopped = false;
+	
+	private FileTailer(int id, Path path, long fromOffset, LineHandler handler) {
+		this.id = id;
+		this.path = path;
+		this.handler = handler;
+		this.offset = (fromOffset >= 0 ? fromOffset : path.toFile().length());
+	}
+	
+	/**
+	 * Starts following the given file.
+	 * @param path - The file to follow. This file does not have to exist yet.
+	 * @param fromOffset - The offset to start reading at, or -1 to start at the current end of the file.
+	 * If the file is smaller than this offset, reading starts at the start of the file.
+	 * @param handler - The handler to pass complete lines to. This handler is called from the polling thread.
+	 * @return The started tailer.
+	 */
+	public static FileTailer start(Path path, long fromOffset, LineHandler handler) {
+		FileTailer tailer = new FileTailer(NEXT_ID.getAndIncrement(), path, fromOffset, handler);
+		TAILERS.put(tailer.id, tailer);
+		synchronized(tailer) {
+			tailer.pollFuture = POLL_EXECUTOR.scheduleWithFixedDelay(
+					tailer::poll, 0, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		return tailer;
+	}
+	
+	/**
+	 * Gets the tailer with the given id.
+	 * @param id - The tailer id.
+	 * @return The tailer, or {@code null} if no such tailer exists or if it has been stopped.
+	 */
+	public static FileTailer get(int id) {
+		return TAILERS.get(id);
+	}
+	
+	/**
+	 * Stops all tailers.
+	 */
+	public static void stopAll() {
+		for(FileTailer tailer : TAILERS.values()) {
+			tailer.stop();
+		}
+	}
+	
+	/**
+	 * Shuts down the executor of the polling thread. Tailers can no longer be started afterwards.
+	 * Called when the extension is unloaded, after {@link #stopAll()}, so that its thread does not outlive it.
+	 */
+	public static void shutdown() {
+		POLL_EXECUTOR.shutdown();
+	}
+	
+	public int getId() {
+		return this.id;
+	}
+	
+	/**
+	 * Stops following the file. The handler will not be called anymore after this method returns.
+	 */
+	public synchronized void stop() {
+		if(this.stopped) {
+			return;
+		}
+		this.stopped = true;
+		TAILERS.remove(this.id);
+		this.pollFuture.cancel(false);
+		this.closeChannel();
+	}
+	
+	private synchronized void poll() {
+		if(this.stopped) {
+			return;
+		}
+		try {
+			BasicFileAttributes attrs;
+			try {
+				attrs = Files.readAttributes(this.path, BasicFileAttributes.class);
+			} catch (NoSuchFileException e) {
+				attrs = null; // The file has been rotated and not yet been recreated, or has not been created yet.
+			}
+			
+			// Detect rotation and truncation.
+			if(this.channel != null) {
+				if(attrs == null || !Objects.equals(attrs.fileKey(), this.fileKey)) {
+					
+					// Pass the remaining lines of the old file before switching to the new file.
+					this.readLines(true);
+					this.closeChannel();
+					this.offset = 0;
+				} else if(this.channel.size() < this.offset) {
+					this.offset = 0;
+				}
+			}
+			
+			// Open the file if it exists.
+			if(this.channel == null) {
+				if(attrs == null) {
+					return;
+				}
+				this.channel = FileChannel.open(this.path, StandardOpenOption.READ);
+				this.fileKey = attrs.fileKey();
+				if(this.channel.size() < this.offset) {
+					this.offset = 0;
+				}
+			}
+			
+			this.readLines(false);
+		} catch (IOException e) {
+			
+			// Reopen the file on the next poll.
+			this.closeChannel();
+		}
+	}
+	
+	/**
+	 * Reads the complete lines after the current offset and passes them to the handler in batches.
+	 * @param includePartialLine - If {@code true}, a trailing line without line terminator is passed as well.
+	 * @throws IOException When an I/O error occurs while reading.
+	 */
+	private void readLines(boolean includePartialLine) throws IOException {
+		long size = this.channel.size();
+		while(this.offset < size && !this.stopped) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(MAX_BATCH_BYTES, size - this.offset));
+			long position = this.offset;
+			while(buffer.hasRemaining()) {
+				int read = this.channel.read(buffer, position);
+				if(read < 0) {
+					break;
+				}
+				position += read;
+			}
+			byte[] bytes = buffer.array();
+			int length = buffer.position();
+			if(length == 0) {
+				return;
+			}
+			
+			// Only consume complete lines, unless the line does not fit in a batch or the partial line is requested.
+			int consumed = length;
+			while(consumed > 0 && bytes[consumed - 1] != '\n') {
+				consumed--;
+			}
+			if(consumed == 0) {
+				if(length < MAX_BATCH_BYTES && !includePartialLine) {
+					return;
+				}
+				consumed = length;
+			}
+			
+			this.offset += consumed;
+			this.handler.handle(splitLines(bytes, consumed), this.offset);
+		}
+	}
+	
+	private void closeChannel() {
+		if(this.channel != null) {
+			try {
+				this.channel.close();
+			} catch (IOException e) {
+				// Ignore.
+			}
+			this.channel = null;
+		}
+	}
+	
+	private static List<String> splitLines(byte[] bytes, int length) {
+		List<String> lines = new ArrayList<>();
+		int lineStart = 0;
+		for(int i = 0; i <= length; i++) {
+			if(i == length ? i > lineStart : bytes[i] == '\n') {
+				int lineEnd = (i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i);
+				lines.add(new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+				lineStart = i + 1;
+			}
+		}
+		return lines;
+	}
+	
+	/**
+	 * Handler for lines read by a {@link FileTailer}.
+	 */
+	public static interface LineHandler {
+		
+		/**
+		 * Handles a batch of lines.
+		 * @param lines - The lines, without line terminators.
+		 * @param offset - The offset in the file directly after the last line. Passing this offset to
+		 * {@link FileTailer#start(Path, long, LineHandler)} continues reading after these lines.
+		 */
+		void handle(List<String> lines, long offset);
+	}
+}
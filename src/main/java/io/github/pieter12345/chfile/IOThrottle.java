@@ -0,0 +1,212 @@
+package io.github.pieter12345.chfile;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A token bucket rate limiter for disk I/O, limiting both the amount of bytes and the amount of file operations per
+ * second. Both buckets hold at most one second worth of tokens.
+ * Callers with {@link Priority#INTERACTIVE} priority never wait. Their tokens are taken immediately, possibly putting
+ * the buckets in debt, and only callers with {@link Priority#BACKGROUND} priority wait until that debt has been repaid.
+ * This way, latency-sensitive operations on the server thread are never blocked, while their I/O still counts towards
+ * the limits. The throttle is disabled until a limit is set.
+ * @author P.J.S. Kools
+ */
+public class IOThrottle {
+	
+	/**
+	 * The maximum amount of bytes that is copied per acquired chunk of tokens. See {@link #getChunkSize()}.
+	 */
+	public static final int CHUNK_SIZE = 1024 * 1024;
+	
+	private static final IOThrottle INSTANCE = new IOThrottle();
+	
+	private long bytesPerSecond = 0;
+	private long opsPerSecond = 0;
+	private double byteTokens = 0;
+	private double opTokens = 0;
+	private long lastRefillTime = System.nanoTime();
+	
+	/**
+	 * Gets the global I/O throttle instance.
+	 * @return The I/O throttle.
+	 */
+	public static IOThrottle getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Sets the limits of this throttle.
+	 * @param bytesPerSecond - The maximum amount of bytes per second. A value of 0 means unlimited.
+	 * @param opsPerSecond - The maximum amount of file operations per second. A value of 0 means unlimited.
+	 */
+	public synchronized void configure(long bytesPerSecond, long opsPerSecond) {
+		this.bytesPerSecond = Math.max(0, bytesPerSecond);
+		this.opsPerSecond = Math.max(0, opsPerSecond);
+		this.byteTokens = this.bytesPerSecond;
+		this.opTokens = this.opsPerSecond;
+		this.lastRefillTime = System.nanoTime();
+		this.notifyAll();
+	}
+	
+	/**
+	 * Checks whether this throttle is enabled.
+	 * @return {@code true} if a bytes or operations limit has been set, {@code false} otherwise.
+	 */
+	public synchronized boolean isEnabled() {
+		return this.bytesPerSecond > 0 || this.opsPerSecond > 0;
+	}
+	
+	public synchronized long getBytesPerSecond() {
+		return this.bytesPerSecond;
+	}
+	
+	public synchronized long getOpsPerSecond() {
+		return this.opsPerSecond;
+	}
+	
+	/**
+	 * Gets the amount of bytes to acquire tokens for per chunk when transferring large amounts of data.
+	 * This never exceeds the bucket size, so that a background chunk never has to wait for more than a full bucket.
+	 * @return The chunk size in bytes, being at most {@link #CHUNK_SIZE}.
+	 */
+	public synchronized int getChunkSize() {
+		return (int) (this.bytesPerSecond > 0 ? Math.min(CHUNK_SIZE, this.bytesPerSecond) : CHUNK_SIZE);
+	}
+	
+	/**
+	 * Acquires tokens for the given amount of file operations and bytes.
+	 * Interactive callers take the tokens immediately and never block, even when this puts the buckets in debt.
+	 * Background callers block until the tokens are available, so they also wait for any debt to be repaid.
+	 * Background requests larger than the bucket size are split into bucket sized parts.
+	 * @param priority - The priority of the caller.
+	 * @param ops - The amount of file operations.
+	 * @param bytes - The amount of bytes.
+	 * @throws InterruptedIOException When the calling thread is interrupted while waiting.
+	 */
+	public synchronized void acquire(Priority priority, int ops, long bytes) throws InterruptedIOException {
+		if(!this.isEnabled()) {
+			return;
+		}
+		
+		// Interactive callers are charged without waiting. The resulting debt is repaid by background callers.
+		if(priority == Priority.INTERACTIVE) {
+			this.refill();
+			this.take(ops, bytes);
+			return;
+		}
+		
+		// Acquire large amounts one full bucket at a time.
+		while(this.bytesPerSecond > 0 && bytes > this.bytesPerSecond) {
+			long bucketSize = this.bytesPerSecond;
+			this.acquire(priority, ops, bucketSize);
+			ops = 0;
+			bytes -= bucketSize;
+		}
+		
+		try {
+			while(this.isEnabled()) {
+				this.refill();
+				double requiredByteTokens = Math.min(bytes, this.bytesPerSecond);
+				double requiredOpTokens = Math.min(ops, this.opsPerSecond);
+				
+				// Take the tokens if available.
+				if(this.byteTokens >= requiredByteTokens && this.opTokens >= requiredOpTokens) {
+					this.take(ops, bytes);
+					return;
+				}
+				
+				// Wait until enough tokens are available.
+				double byteWaitSeconds = (this.bytesPerSecond > 0
+						? (requiredByteTokens - this.byteTokens) / this.bytesPerSecond : 0);
+				double opWaitSeconds = (this.opsPerSecond > 0
+						? (requiredOpTokens - this.opTokens) / this.opsPerSecond : 0);
+				double waitSeconds = Math.max(byteWaitSeconds, opWaitSeconds);
+				this.wait(Math.max(1, (long) Math.ceil(waitSeconds * 1000)));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the I/O throttle.");
+		}
+	}
+	
+	/**
+	 * Copies the source file to the target file, acquiring tokens for every chunk of {@link #getChunkSize()} bytes.
+	 * When this throttle is disabled, the file is copied using {@link Files#copy(Path, Path, CopyOption...)}.
+	 * @param source - The file to copy.
+	 * @param target - The file to copy to.
+	 * @param priority - The priority of the copy.
+	 * @param options - The copy options. When throttled, the target is always replaced and
+	 * {@link StandardCopyOption#COPY_ATTRIBUTES} only copies the last modified time.
+	 * @throws IOException When an I/O error occurs while copying.
+	 */
+	public void copy(Path source, Path target, Priority priority, CopyOption... options) throws IOException {
+		if(!this.isEnabled()) {
+			Files.copy(source, target, options);
+			return;
+		}
+		try(FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+						StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			long position = 0;
+			int ops = 1;
+			do {
+				long chunkSize = Math.min(this.getChunkSize(), size - position);
+				this.acquire(priority, ops, chunkSize);
+				ops = 0;
+				if(chunkSize == 0) {
+					break;
+				}
+				long transferred = in.transferTo(position, chunkSize, out);
+				if(transferred <= 0) {
+					break; // The source file has been truncated while copying.
+				}
+				position += transferred;
+			} while(position < size);
+		}
+		if(Arrays.asList(options).contains(StandardCopyOption.COPY_ATTRIBUTES)) {
+			Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+		}
+	}
+	
+	private void take(int ops, long bytes) {
+		if(this.bytesPerSecond > 0) {
+			this.byteTokens -= bytes;
+		}
+		if(this.opsPerSecond > 0) {
+			this.opTokens -= ops;
+		}
+	}
+	
+	private void refill() {
+		long now = System.nanoTime();
+		double elapsedSeconds = (now - this.lastRefillTime) / 1_000_000_000d;
+		this.lastRefillTime = now;
+		this.byteTokens = Math.min(this.bytesPerSecond, this.byteTokens + elapsedSeconds * this.bytesPerSecond);
+		this.opTokens = Math.min(this.opsPerSecond, this.opTokens + elapsedSeconds * this.opsPerSecond);
+	}
+	
+	/**
+	 * I/O priority classes.
+	 */
+	public static enum Priority {
+		
+		/**
+		 * Small latency-sensitive operations. These never wait, but their I/O delays background operations.
+		 */
+		INTERACTIVE,
+		
+		/**
+		 * Long running operations which wait for the I/O of both background and interactive operations.
+		 */
+		BACKGROUND;
+	}
+}
@@ -0,0 +1,597 @@
+package io.github.pieter12345.chfile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * A key/value store backed by a single append-only log file, with an in-memory index from key to record offset.
+ * Every put or delete appends a record to the log, and values are read using positional reads.
+ * Superseded records are removed by compaction, which runs in the background when they take up more than half of the
+ * log. When opening a store, the log is scanned to rebuild the index, and a partially written record at the end of the
+ * log (for example due to a crash) is removed, together with any zero bytes after it. Other invalid data is never
+ * removed, since it may be followed by valid records or may not be a store at all. Opening the store fails instead,
+ * leaving the log unchanged.
+ * <p>
+ * File format: magic (int), version (int), followed by the records.
+ * Record format: crc32 (int), type (byte), key length (int), value length (int), key (UTF-8), value (UTF-8).
+ * The checksum covers everything after it.
+ * @author P.J.S. Kools
+ */
+public class KeyValueStore {
+	
+	private static final int FILE_MAGIC = 0x43484B56; // "CHKV".
+	private static final int FILE_VERSION = 1;
+	private static final int FILE_HEADER_SIZE = 4 + 4;
+	private static final byte RECORD_PUT = 1;
+	private static final byte RECORD_DELETE = 2;
+	private static final int RECORD_HEADER_SIZE = 4 + 1 + 4 + 4;
+	private static final long COMPACTION_MIN_GARBAGE_BYTES = 1024 * 1024;
+	private static final double COMPACTION_MIN_GARBAGE_RATIO = 0.5;
+	private static final int RECOVERY_SCAN_BUFFER_SIZE = 64 * 1024;
+	
+	private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+	private static final Map<Integer, KeyValueStore> STORES = new ConcurrentHashMap<>();
+	private static final ExecutorService COMPACTION_EXECUTOR =
+			Executors.newSingleThreadExecutor((Runnable runnable) -> {
+				Thread thread = new Thread(runnable, "CHFile-KV-Compaction");
+				thread.setDaemon(true);
+				return thread;
+			});
+	
+	private final int id;
+	private final Path path;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final ReentrantLock compactionLock = new ReentrantLock();
+	private FileChannel channel;
+	private Map<String, IndexEntry> index = new HashMap<>();
+	private long fileSize = 0;
+	private long garbageBytes = 0;
+	private volatile boolean compactionScheduled = false;
+	private boolean closed = false;
+	
+	private KeyValueStore(int id, Path path) throws IOException {
+		this.id = id;
+		this.path = path;
+		this.channel = FileChannel.open(path,
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			this.recover();
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Opens the store at the given path, creating it if it does not exist yet.
+	 * If the store is already open, the already opened store is returned.
+	 * @param path - The path of the log file.
+	 * @return The store.
+	 * @throws IOException When an I/O error occurs while opening or recovering the store, when the file is not a
+	 * key/value store or when the log contains invalid data that is not a partially written record at its end.
+	 */
+	public static synchronized KeyValueStore open(Path path) throws IOException {
+		Path normalizedPath = path.toAbsolutePath().normalize();
+		for(KeyValueStore store : STORES.values()) {
+			if(store.path.equals(normalizedPath)) {
+				return store;
+			}
+		}
+		KeyValueStore store = new KeyValueStore(NEXT_ID.getAndIncrement(), normalizedPath);
+		STORES.put(store.id, store);
+		return store;
+	}
+	
+	/**
+	 * Gets the open store with the given id.
+	 * @param id - The store id.
+	 * @return The store, or {@code null} if no open store with the given id exists.
+	 */
+	public static KeyValueStore get(int id) {
+		return STORES.get(id);
+	}
+	
+	/**
+	 * Closes all open stores. Every store is closed, even when closing another store fails.
+	 * @throws IOException When an I/O error occurs while closing a store. Errors of other stores are suppressed.
+	 */
+	public static void closeAll() throws IOException {
+		IOException exception = null;
+		for(KeyValueStore store : STORES.values()) {
+			try {
+				store.close();
+			} catch (IOException e) {
+				if(exception == null) {
+					exception = e;
+				} else {
+					exception.addSuppressed(e);
+				}
+			}
+		}
+		if(exception != null) {
+			throw exception;
+		}
+	}
+	
+	/**
+	 * Shuts down the executor of background compactions. Compactions are no longer scheduled afterwards.
+	 * Called when the extension is unloaded, after {@link #closeAll()}, so that its thread does not outlive it.
+	 */
+	public static void shutdown() {
+		COMPACTION_EXECUTOR.shutdown();
+	}
+	
+	public int getId() {
+		return this.id;
+	}
+	
+	/**
+	 * Gets the value for the given key.
+	 * @param key - The key.
+	 * @return The value, or {@code null} if the key does not exist.
+	 * @throws IOException When an I/O error occurs or when the store has been closed.
+	 */
+	public String get(String key) throws IOException {
+		this.lock.readLock().lock();
+		try {
+			this.ensureOpen();
+			IndexEntry entry = this.index.get(key);
+			if(entry == null) {
+				return null;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(entry.valueLength);
+			if(!readFully(this.channel, buffer, entry.getValueOffset())) {
+				throw new IOException("Unexpected end of key/value store file: '" + this.path + "'.");
+			}
+			return new String(buffer.array(), StandardCharsets.UTF_8);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Sets the value for the given key.
+	 * @param key - The key.
+	 * @param value - The value.
+	 * @throws IOException When an I/O error occurs or when the store has been closed.
+	 */
+	public void put(String key, String value) throws IOException {
+		this.append(RECORD_PUT, key, value.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Removes the given key.
+	 * @param key - The key.
+	 * @return {@code true} if the key existed, {@code false} otherwise.
+	 * @throws IOException When an I/O error occurs or when the store has been closed.
+	 */
+	public boolean delete(String key) throws IOException {
+		this.lock.writeLock().lock();
+		try {
+			this.ensureOpen();
+			if(!this.index.containsKey(key)) {
+				return false;
+			}
+			this.append(RECORD_DELETE, key, new byte[0]);
+			return true;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Gets the amount of keys in this store.
+	 * @return The amount of keys.
+	 */
+	public int size() {
+		this.lock.readLock().lock();
+		try {
+			return this.index.size();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Rewrites the log file, keeping only the records of existing keys.
+	 * The live records are copied while reads and writes continue. Records appended during the copy are replayed and
+	 * the new log replaces the old one atomically, blocking reads and writes only during this last step.
+	 * @throws IOException When an I/O error occurs or when the store has been closed.
+	 */
+	public void compact() throws IOException {
+		this.compactionLock.lock();
+		try {
+			
+			// Take a snapshot of the index.
+			Map<String, IndexEntry> snapshot;
+			long snapshotEnd;
+			FileChannel oldChannel;
+			this.lock.writeLock().lock();
+			try {
+				this.ensureOpen();
+				snapshot = new HashMap<>(this.index);
+				snapshotEnd = this.fileSize;
+				oldChannel = this.channel;
+			} finally {
+				this.lock.writeLock().unlock();
+			}
+			
+			Path tempPath = this.path.resolveSibling(this.path.getFileName() + ".compact");
+			FileChannel newChannel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			boolean moved = false;
+			try {
+				
+				// Copy the live records of the snapshot. The old log is append-only, so its records don't change.
+				Map<String, IndexEntry> newIndex = new HashMap<>();
+				ByteBuffer fileHeader = createFileHeader();
+				while(fileHeader.hasRemaining()) {
+					newChannel.write(fileHeader);
+				}
+				long newSize = FILE_HEADER_SIZE;
+				for(Map.Entry<String, IndexEntry> mapEntry : snapshot.entrySet()) {
+					IndexEntry entry = mapEntry.getValue();
+					transferFully(oldChannel, entry.recordOffset, entry.recordSize, newChannel);
+					newIndex.put(mapEntry.getKey(), new IndexEntry(newSize, entry.recordSize, entry.valueLength));
+					newSize += entry.recordSize;
+				}
+				
+				this.lock.writeLock().lock();
+				try {
+					this.ensureOpen();
+					
+					// Replay the records that have been appended during the copy.
+					long newGarbageBytes = 0;
+					for(long position = snapshotEnd; position < this.fileSize;) {
+						Record record = readRecord(this.channel, position, this.fileSize);
+						if(record == null) {
+							throw new IOException("Corrupt record in key/value store file: '" + this.path + "'.");
+						}
+						transferFully(this.channel, position, record.size, newChannel);
+						newGarbageBytes += applyRecord(newIndex, record, newSize);
+						newSize += record.size;
+						position += record.size;
+					}
+					newChannel.force(true);
+					newChannel.close();
+					
+					// Replace the old log.
+					this.channel.close();
+					try {
+						Files.move(tempPath, this.path, StandardCopyOption.ATOMIC_MOVE);
+						moved = true;
+					} finally {
+						this.channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+						if(moved) {
+							this.index = newIndex;
+							this.fileSize = newSize;
+							this.garbageBytes = newGarbageBytes;
+						}
+					}
+				} finally {
+					this.lock.writeLock().unlock();
+				}
+			} finally {
+				newChannel.close();
+				if(!moved) {
+					Files.deleteIfExists(tempPath);
+				}
+			}
+		} finally {
+			this.compactionScheduled = false;
+			this.compactionLock.unlock();
+		}
+	}
+	
+	/**
+	 * Closes this store. Afterwards, the store can no longer be used.
+	 * @throws IOException When an I/O error occurs while closing the log file.
+	 */
+	public void close() throws IOException {
+		this.lock.writeLock().lock();
+		try {
+			if(this.closed) {
+				return;
+			}
+			this.closed = true;
+			STORES.remove(this.id);
+			try {
+				this.channel.force(true);
+			} finally {
+				this.channel.close();
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+	
+	private void append(byte type, String key, byte[] value) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length + value.length);
+		buffer.putInt(0);
+		buffer.put(type);
+		buffer.putInt(keyBytes.length);
+		buffer.putInt(value.length);
+		buffer.put(keyBytes);
+		buffer.put(value);
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 4, buffer.capacity() - 4);
+		buffer.putInt(0, (int) crc.getValue());
+		buffer.flip();
+		
+		this.lock.writeLock().lock();
+		try {
+			this.ensureOpen();
+			long position = this.fileSize;
+			while(buffer.hasRemaining()) {
+				position += this.channel.write(buffer, position);
+			}
+			this.garbageBytes += applyRecord(this.index,
+					new Record(type, key, buffer.capacity(), value.length), this.fileSize);
+			this.fileSize = position;
+			
+			// Schedule a compaction when enough of the log consists of superseded records.
+			if(!this.compactionScheduled && !COMPACTION_EXECUTOR.isShutdown()
+					&& this.garbageBytes >= COMPACTION_MIN_GARBAGE_BYTES
+					&& this.garbageBytes >= this.fileSize * COMPACTION_MIN_GARBAGE_RATIO) {
+				this.compactionScheduled = true;
+				COMPACTION_EXECUTOR.execute(() -> {
+					try {
+						this.compact();
+					} catch (IOException e) {
+						// Ignore. Compaction will be attempted again on the next write.
+					}
+				});
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+	
+	private void recover() throws IOException {
+		long size = this.channel.size();
+		ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		if(!readFully(this.channel, fileHeader, 0)) {
+			
+			// Initialize a new store. A partially written file header is only overwritten if it is one.
+			ByteBuffer expectedHeader = createFileHeader();
+			for(int i = 0; i < fileHeader.position(); i++) {
+				if(fileHeader.get(i) != expectedHeader.get(i) && fileHeader.get(i) != 0) {
+					throw new IOException("Not a key/value store file: '" + this.path + "'.");
+				}
+			}
+			while(expectedHeader.hasRemaining()) {
+				this.channel.write(expectedHeader, expectedHeader.position());
+			}
+			this.channel.force(true);
+			this.fileSize = FILE_HEADER_SIZE;
+			return;
+		}
+		fileHeader.flip();
+		if(fileHeader.getInt() != FILE_MAGIC) {
+			throw new IOException("Not a key/value store file: '" + this.path + "'.");
+		}
+		int version = fileHeader.getInt();
+		if(version != FILE_VERSION) {
+			throw new IOException("Unsupported key/value store version " + version + ": '" + this.path + "'.");
+		}
+		
+		long position = FILE_HEADER_SIZE;
+		Record record;
+		while((record = readRecord(this.channel, position, size)) != null) {
+			this.garbageBytes += applyRecord(this.index, record, position);
+			position += record.size;
+		}
+		
+		// Remove a partially written record at the end of the log.
+		if(position < size) {
+			if(!this.isTornTail(position, size)) {
+				throw new IOException("Corrupt record at offset " + position
+						+ " in key/value store file: '" + this.path + "'.");
+			}
+			this.channel.truncate(position);
+		}
+		this.fileSize = position;
+	}
+	
+	/**
+	 * Checks whether the invalid data from the given position to the end of the log is a partially written record.
+	 * This is the case when all non-zero bytes lie within a single record starting at the given position and when no
+	 * valid record starts after the given position. Zero bytes can follow a partially written record when the file
+	 * system has extended the file before its data was written.
+	 * @param position - The position of the first invalid data.
+	 * @param size - The size of the log.
+	 * @return {@code true} if the data is a partially written record, {@code false} otherwise.
+	 * @throws IOException When an I/O error occurs.
+	 */
+	private boolean isTornTail(long position, long size) throws IOException {
+		
+		// Determine where the record ends. Its declared size is only used when its header is valid.
+		long recordEnd = position + RECORD_HEADER_SIZE;
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		if(readFully(this.channel, header, position)) {
+			header.flip();
+			header.getInt();
+			byte type = header.get();
+			int keyLength = header.getInt();
+			int valueLength = header.getInt();
+			if(isValidRecordHeader(type, keyLength, valueLength)) {
+				recordEnd = position + RECORD_HEADER_SIZE + keyLength + valueLength;
+			}
+		}
+		
+		// Scan the remaining data for non-zero bytes beyond the record and for the type of a following valid record.
+		ByteBuffer buffer = ByteBuffer.allocate(RECOVERY_SCAN_BUFFER_SIZE);
+		for(long bufferStart = position; bufferStart < size; bufferStart += buffer.capacity()) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), size - bufferStart));
+			if(!readFully(this.channel, buffer, bufferStart)) {
+				return false;
+			}
+			for(int i = 0; i < buffer.limit(); i++) {
+				byte b = buffer.get(i);
+				if(b == 0) {
+					continue;
+				}
+				long offset = bufferStart + i;
+				if(offset >= recordEnd) {
+					return false;
+				}
+				long recordStart = offset - 4;
+				if((b == RECORD_PUT || b == RECORD_DELETE) && recordStart > position
+						&& readRecord(this.channel, recordStart, size) != null) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	private static ByteBuffer createFileHeader() {
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		header.putInt(FILE_MAGIC);
+		header.putInt(FILE_VERSION);
+		header.flip();
+		return header;
+	}
+	
+	private void ensureOpen() throws IOException {
+		if(this.closed) {
+			throw new IOException("The key/value store has been closed: '" + this.path + "'.");
+		}
+	}
+	
+	/**
+	 * Applies the given record to the given index.
+	 * @param index - The index.
+	 * @param record - The record.
+	 * @param position - The offset of the record in the log.
+	 * @return The amount of bytes in the log that have become garbage by applying the record.
+	 */
+	private static long applyRecord(Map<String, IndexEntry> index, Record record, long position) {
+		IndexEntry oldEntry;
+		long garbageBytes = 0;
+		if(record.type == RECORD_PUT) {
+			oldEntry = index.put(record.key, new IndexEntry(position, record.size, record.valueLength));
+		} else {
+			oldEntry = index.remove(record.key);
+			garbageBytes += record.size;
+		}
+		if(oldEntry != null) {
+			garbageBytes += oldEntry.recordSize;
+		}
+		return garbageBytes;
+	}
+	
+	/**
+	 * Reads and validates the record at the given position.
+	 * @param channel - The channel to read from.
+	 * @param position - The position of the record.
+	 * @param size - The size of the log.
+	 * @return The record, or {@code null} if there is no complete and valid record at the given position.
+	 * @throws IOException When an I/O error occurs.
+	 */
+	private static Record readRecord(FileChannel channel, long position, long size) throws IOException {
+		if(size - position < RECORD_HEADER_SIZE) {
+			return null;
+		}
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		if(!readFully(channel, header, position)) {
+			return null;
+		}
+		header.flip();
+		int crcValue = header.getInt();
+		byte type = header.get();
+		int keyLength = header.getInt();
+		int valueLength = header.getInt();
+		if(!isValidRecordHeader(type, keyLength, valueLength)
+				|| size - position - RECORD_HEADER_SIZE < (long) keyLength + valueLength) {
+			return null;
+		}
+		ByteBuffer data = ByteBuffer.allocate(keyLength + valueLength);
+		if(!readFully(channel, data, position + RECORD_HEADER_SIZE)) {
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(header.array(), 4, RECORD_HEADER_SIZE - 4);
+		crc.update(data.array(), 0, data.capacity());
+		if((int) crc.getValue() != crcValue) {
+			return null;
+		}
+		String key = new String(data.array(), 0, keyLength, StandardCharsets.UTF_8);
+		return new Record(type, key, RECORD_HEADER_SIZE + keyLength + valueLength, valueLength);
+	}
+	
+	private static boolean isValidRecordHeader(byte type, int keyLength, int valueLength) {
+		return (type == RECORD_PUT || type == RECORD_DELETE) && keyLength >= 0 && valueLength >= 0
+				&& (long) keyLength + valueLength <= Integer.MAX_VALUE - RECORD_HEADER_SIZE;
+	}
+	
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if(read < 0) {
+				return false;
+			}
+			position += read;
+		}
+		return true;
+	}
+	
+	private static void transferFully(FileChannel source, long position, long count, FileChannel target)
+			throws IOException {
+		while(count > 0) {
+			long transferred = source.transferTo(position, count, target);
+			if(transferred <= 0) {
+				throw new IOException("Unexpected end of key/value store file.");
+			}
+			position += transferred;
+			count -= transferred;
+		}
+	}
+	
+	private static class IndexEntry {
+		private final long recordOffset;
+		private final int recordSize;
+		private final int valueLength;
+		
+		private IndexEntry(long recordOffset, int recordSize, int valueLength) {
+			this.recordOffset = recordOffset;
+			this.recordSize = recordSize;
+			this.valueLength = valueLength;
+		}
+		
+		private long getValueOffset() {
+			return this.recordOffset + this.recordSize - this.valueLength;
+		}
+	}
+	
+	private static class Record {
+		private final byte type;
+		private final String key;
+		private final int size;
+		private final int valueLength;
+		
+		private Record(byte type, String key, int size, int valueLength) {
+			this.type = type;
+			this.key = key;
+			this.size = size;
+			this.valueLength = valueLength;
+		}
+	}
+}
@@ -3,9 +3,19 @@ package io.github.pieter12345.chfile;
 import com.laytonsmith.PureUtilities.SimpleVersion;
 import com.laytonsmith.PureUtilities.Version;
 import com.laytonsmith.core.LogLevel;
+import com.laytonsmith.core.ParseTree;
+import com.laytonsmith.core.Script;
+import com.laytonsmith.core.constructs.Target;
+import com.laytonsmith.core.environments.Environment;
 import com.laytonsmith.core.extensions.AbstractExtension;
 import com.laytonsmith.core.extensions.MSExtension;
 import com.laytonsmith.core.functions.AbstractFunction;
+import com.laytonsmith.core.natives.interfaces.Mixed;
+
+import io.github.pieter12345.chfile.FileMetrics.FunctionMetrics;
+import io.github.pieter12345.chfile.chfunctions.CHFileHandling;
+
+import java.io.IOException;
 
 /**
  * CHFile's LifeCycle.
@@ -20,13 +30,69 @@ public class LifeCycle extends AbstractExtension {
 		return new SimpleVersion(0, 0, 7);
 	}
 	
+	/**
+	 * Releases the resources of the extension when it is unloaded.
+	 * All file tailers are stopped and all background file jobs are cancelled, so that their closures are not run
+	 * after the extension has been unloaded.
+	 * All key/value stores are closed, forcing their contents to disk.
+	 * The periodic metrics dump is cancelled.
+	 * The static executors are shut down, so that their threads do not outlive the extension.
+	 */
+	@Override
+	public void onShutdown() {
+		FileTailer.stopAll();
+		FileJob.cancelAll();
+		FileMetrics.getInstance().configureDump(null, 0);
+		try {
+			KeyValueStore.closeAll();
+		} catch (IOException e) {
+			// Ignore. The stores have been closed, but some may not have been forced to disk.
+		}
+		CHFileHandling.shutdown();
+		FileFinder.shutdown();
+		FileJob.shutdown();
+		FileTailer.shutdown();
+		KeyValueStore.shutdown();
+		FileMetrics.shutdown();
+	}
+	
 	public static abstract class FileFunction extends AbstractFunction {
 		
+		private final FunctionMetrics metrics = FileMetrics.getInstance().getFunctionMetrics(this.getName());
+		
 		@Override
 		public String getName() {
 			return this.getClass().getSimpleName();
 		}
 		
+		/**
+		 * Evaluates the arguments and calls {@link #exec(Target, Environment, Mixed...)}, recording its latency and
+		 * outcome in the {@link FileMetrics}. This is the single place where the metrics of all functions are recorded.
+		 */
+		@Override
+		public Mixed execs(Target t, Environment env, Script parent, ParseTree... nodes) {
+			Mixed[] args = new Mixed[nodes.length];
+			for(int i = 0; i < nodes.length; i++) {
+				args[i] = parent.seval(nodes[i], env);
+			}
+			FunctionMetrics previousMetrics = FileMetrics.setCurrentFunction(this.metrics);
+			long startTime = System.nanoTime();
+			boolean success = false;
+			try {
+				Mixed ret = this.exec(t, env, args);
+				success = true;
+				return ret;
+			} finally {
+				this.metrics.record(System.nanoTime() - startTime, success);
+				FileMetrics.setCurrentFunction(previousMetrics);
+			}
+		}
+		
+		@Override
+		public boolean useSpecialExec() {
+			return true; // Evaluate the arguments in execs(), so that every call passes through the metrics wrapper.
+		}
+		
 		@Override
 		public boolean isRestricted() {
 			return true;
@@ -1,6 +1,8 @@
 package io.github.pieter12345.chfile.chfunctions;
 
+import com.laytonsmith.PureUtilities.DaemonManager;
 import com.laytonsmith.PureUtilities.Version;
+import com.laytonsmith.abstraction.StaticLayer;
 import com.laytonsmith.annotations.api;
 import com.laytonsmith.core.ArgumentValidation;
 import com.laytonsmith.core.MSVersion;
@@ -9,29 +11,69 @@ import com.laytonsmith.core.Static;
 import com.laytonsmith.core.constructs.CArray;
 import com.laytonsmith.core.constructs.CBoolean;
 import com.laytonsmith.core.constructs.CByteArray;
+import com.laytonsmith.core.constructs.CClosure;
+import com.laytonsmith.core.constructs.CDouble;
+import com.laytonsmith.core.constructs.CInt;
+import com.laytonsmith.core.constructs.CNull;
 import com.laytonsmith.core.constructs.CString;
 import com.laytonsmith.core.constructs.CVoid;
 import com.laytonsmith.core.constructs.Target;
 import com.laytonsmith.core.environments.Environment;
+import com.laytonsmith.core.environments.GlobalEnv;
 import com.laytonsmith.core.exceptions.ConfigRuntimeException;
 import com.laytonsmith.core.exceptions.CRE.CRECastException;
 import com.laytonsmith.core.exceptions.CRE.CREFormatException;
 import com.laytonsmith.core.exceptions.CRE.CREIOException;
+import com.laytonsmith.core.exceptions.CRE.CRENotFoundException;
+import com.laytonsmith.core.exceptions.CRE.CRERangeException;
 import com.laytonsmith.core.exceptions.CRE.CRESecurityException;
 import com.laytonsmith.core.exceptions.CRE.CREThrowable;
 import com.laytonsmith.core.natives.interfaces.Mixed;
 
+import io.github.pieter12345.chfile.FileFinder;
+import io.github.pieter12345.chfile.FileJob;
+import io.github.pieter12345.chfile.FileMetrics;
+import io.github.pieter12345.chfile.FileMetrics.FunctionMetrics;
+import io.github.pieter12345.chfile.FileReadCache;
+import io.github.pieter12345.chfile.FileTailer;
+import io.github.pieter12345.chfile.IOThrottle;
+import io.github.pieter12345.chfile.KeyValueStore;
+import io.github.pieter12345.chfile.IOThrottle.Priority;
 import io.github.pieter12345.chfile.LifeCycle.FileFunction;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -41,6 +83,29 @@ import java.util.zip.GZIPOutputStream;
  */
 public class CHFileHandling {
 	
+	/**
+	 * The maximum amount of bytes written at once when preallocating files.
+	 */
+	private static final int PREALLOCATION_CHUNK_SIZE = 1024 * 1024;
+	
+	/**
+	 * Executor used to perform blocking file operations in parallel.
+	 */
+	private static final ExecutorService PARALLEL_IO_EXECUTOR = Executors.newFixedThreadPool(
+			Math.max(2, Runtime.getRuntime().availableProcessors()), (Runnable runnable) -> {
+				Thread thread = new Thread(runnable, "CHFile-IO");
+				thread.setDaemon(true);
+				return thread;
+			});
+	
+	/**
+	 * Shuts down the executor used by the functions in this class, letting running tasks finish.
+	 * Called when the extension is unloaded, so that its threads do not outlive it.
+	 */
+	public static void shutdown() {
+		PARALLEL_IO_EXECUTOR.shutdown();
+	}
+	
 	@api
 	public static class chf_directory_list extends FileFunction {
 		
@@ -97,6 +162,9 @@ public class CHFileHandling {
 		
 		@Override
 		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			if(args[0] instanceof CArray) {
+				return bulkLookup((CArray) args[0], env, t, (File file) -> CBoolean.GenerateCBoolean(file.exists(), t));
+			}
 			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
 			checkSecurity(location, env, t);
 			return CBoolean.GenerateCBoolean(location.exists(), t);
@@ -104,7 +172,8 @@ public class CHFileHandling {
 		
 		@Override
 		public String docs() {
-			return "boolean {path} Returns whether the file or directory at the given path exists."
+			return "mixed {path} Returns whether the file or directory at the given path exists."
+					+ " If an array of paths is given, an array containing the result for every path is returned."
 					+ " The path is relative to the file that is being run, not CommandHelper."
 					+ " If the file specified is not within base-dir (as specified in the preferences file),"
 					+ " a SecurityException is thrown.";
@@ -132,6 +201,10 @@ public class CHFileHandling {
 		
 		@Override
 		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			if(args[0] instanceof CArray) {
+				return bulkLookup((CArray) args[0], env, t,
+						(File file) -> CBoolean.GenerateCBoolean(file.isDirectory(), t));
+			}
 			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
 			checkSecurity(location, env, t);
 			return CBoolean.GenerateCBoolean(location.isDirectory(), t);
@@ -139,7 +212,8 @@ public class CHFileHandling {
 		
 		@Override
 		public String docs() {
-			return "boolean {path} Returns whether the file at the given path is a directory."
+			return "mixed {path} Returns whether the file at the given path is a directory."
+					+ " If an array of paths is given, an array containing the result for every path is returned."
 					+ " The path is relative to the file that is being run, not CommandHelper."
 					+ " If the file specified is not within base-dir (as specified in the preferences file),"
 					+ " a SecurityException is thrown.";
@@ -157,12 +231,199 @@ public class CHFileHandling {
 		}
 	}
 	
+	@api
+	public static class chf_stat_many extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			return bulkLookup(ArgumentValidation.getArray(args[0], t), env, t, (File file) -> {
+				BasicFileAttributes attrs;
+				try {
+					attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+				} catch (IOException e) {
+					return CNull.NULL; // The file does not exist or cannot be accessed.
+				}
+				CArray ret = CArray.GetAssociativeArray(t);
+				ret.set("type", new CString(
+						(attrs.isDirectory() ? "DIRECTORY" : (attrs.isRegularFile() ? "FILE" : "OTHER")), t), t);
+				ret.set("size", new CInt(attrs.size(), t), t);
+				ret.set("lastmodified", new CInt(attrs.lastModifiedTime().toMillis(), t), t);
+				return ret;
+			});
+		}
+		
+		@Override
+		public String docs() {
+			return "array {paths} Returns an array containing the attributes of the file or directory at each of the"
+					+ " given paths, in the same order. The attributes of a path are null if nothing exists at that"
+					+ " path, and an associative array otherwise, containing keys: type (FILE, DIRECTORY or OTHER),"
+					+ " size (in bytes) and lastmodified (in milliseconds since epoch)."
+					+ " This is faster than checking every path separately, as the paths are checked grouped by"
+					+ " directory and access to each directory only has to be checked once."
+					+ " The paths are relative to the file that is being run, not CommandHelper."
+					+ " If a file specified is not within base-dir (as specified in the preferences file),"
+					+ " a SecurityException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRESecurityException.class, CREIOException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_find extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {2, 3};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			File root = Static.GetFileFromArgument(args[0].val(), env, t, null);
+			String pattern = args[1].val();
+			CArray options = (args.length == 3
+					? ArgumentValidation.getArray(args[2], t) : CArray.GetAssociativeArray(t));
+			checkSecurity(root, env, t);
+			if(!root.isDirectory()) {
+				throw new CREIOException("Directory at root does not exist or is a file: '"
+						+ root.getAbsolutePath() + "'.", t);
+			}
+			
+			// Create the file finder.
+			String patternType = (options.containsKey("patterntype")
+					? options.get("patterntype", t).val().toLowerCase() : "glob");
+			if(!patternType.equals("glob") && !patternType.equals("regex")) {
+				throw new CREFormatException("Option 'patterntype' of " + this.getName()
+						+ " has to be one of 'GLOB' or 'REGEX'.", t);
+			}
+			PathMatcher matcher = getPathMatcher(patternType, pattern, t);
+			if(patternType.equals("glob") && pattern.startsWith("**/")) {
+				
+				// A leading '**/' requires at least one directory, so match files in root without it.
+				PathMatcher subDirMatcher = matcher;
+				PathMatcher rootMatcher = getPathMatcher(patternType, pattern.substring(3), t);
+				matcher = (Path path) -> subDirMatcher.matches(path) || rootMatcher.matches(path);
+			}
+			FileFinder finder = new FileFinder(root.toPath(), matcher,
+					pattern.contains("/") || pattern.contains(File.separator));
+			finder.setSizeRange(
+					(options.containsKey("minsize") ? ArgumentValidation.getInt(options.get("minsize", t), t) : 0),
+					(options.containsKey("maxsize")
+							? ArgumentValidation.getInt(options.get("maxsize", t), t) : Long.MAX_VALUE));
+			finder.setLastModifiedRange(
+					(options.containsKey("minmtime")
+							? ArgumentValidation.getInt(options.get("minmtime", t), t) : Long.MIN_VALUE),
+					(options.containsKey("maxmtime")
+							? ArgumentValidation.getInt(options.get("maxmtime", t), t) : Long.MAX_VALUE));
+			if(options.containsKey("maxdepth")) {
+				finder.setMaxDepth(ArgumentValidation.getInt32(options.get("maxdepth", t), t));
+			}
+			if(options.containsKey("excludedirs")) {
+				for(Mixed excludedDir : ArgumentValidation.getArray(options.get("excludedirs", t), t).asList()) {
+					finder.addExcludedDir(getPathMatcher("glob", excludedDir.val(), t));
+				}
+			}
+			CClosure callback = null;
+			if(options.containsKey("callback")) {
+				Mixed callbackArg = options.get("callback", t);
+				if(!(callbackArg instanceof CClosure)) {
+					throw new CRECastException("Option 'callback' of " + this.getName() + " has to be a closure.", t);
+				}
+				callback = (CClosure) callbackArg;
+			}
+			
+			// Perform the search, passing matches to the callback or storing them in the result array.
+			CArray ret = (callback == null ? new CArray(t) : null);
+			CClosure finalCallback = callback;
+			try {
+				finder.find((Path path) -> {
+					CString match = new CString(path.toString(), t);
+					if(finalCallback == null) {
+						ret.push(match, t);
+						return true;
+					}
+					Mixed callbackRet = finalCallback.executeCallable(match);
+					return !(callbackRet instanceof CBoolean) || ((CBoolean) callbackRet).getBoolean();
+				});
+			} catch (IOException e) {
+				throw new CREIOException("Could not search directory: '" + root.getAbsolutePath()
+						+ "'. Message: " + e.getMessage(), t);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CREIOException("Interrupted while searching directory: '" + root.getAbsolutePath() + "'.", t);
+			}
+			return (ret != null ? ret : CVoid.VOID);
+		}
+		
+		private static PathMatcher getPathMatcher(String patternType, String pattern, Target t) {
+			try {
+				return FileSystems.getDefault().getPathMatcher(patternType + ":" + pattern);
+			} catch (IllegalArgumentException e) {
+				throw new CREFormatException("Invalid " + patternType + " pattern: '" + pattern
+						+ "'. Message: " + e.getMessage(), t);
+			}
+		}
+		
+		@Override
+		public String docs() {
+			return "mixed {root, pattern, [options]} Searches the directory at root and all its subdirectories for"
+					+ " files matching the given pattern. Returns an array containing the absolute paths of all"
+					+ " matching files, or void if a callback has been given. Directories themselves are never matched."
+					+ " If the pattern contains a '/', it is matched against the path relative to root."
+					+ " Otherwise, it is matched against the file name."
+					+ " A GLOB pattern starting with '**/' also matches files directly in root, so '**/*.dat' matches"
+					+ " both 'x.dat' and 'a/b/x.dat'."
+					+ " Subdirectories of root are searched in parallel, so the order of the results is undefined."
+					+ " Files and directories that cannot be accessed are skipped."
+					+ " Options is an associative array which may contain the following keys:"
+					+ " patterntype - One of GLOB (default) or REGEX."
+					+ " minsize, maxsize - The minimum and maximum file size in bytes (inclusive)."
+					+ " minmtime, maxmtime - The minimum and maximum last modified time of the file in milliseconds"
+					+ " since epoch (inclusive)."
+					+ " maxdepth - The maximum depth to search in, where files in root are at depth 1."
+					+ " excludedirs - An array of glob patterns. Directories whose name matches one of these patterns"
+					+ " are not searched."
+					+ " callback - A closure which is called with the path of every matching file while the search is"
+					+ " running, instead of collecting all paths in an array. The search stops when it returns false."
+					+ " The root path is relative to the file that is being run, not CommandHelper."
+					+ " If the file specified is not within base-dir (as specified in the preferences file),"
+					+ " a SecurityException is thrown."
+					+ " Throws a FormatException if a pattern or the patterntype is invalid."
+					+ " Throws an IOException if root is not a directory or if the search fails.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {
+					CRECastException.class, CRESecurityException.class, CREIOException.class, CREFormatException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
 	@api
 	public static class chf_copy extends FileFunction {
 		
 		@Override
 		public Integer[] numArgs() {
-			return new Integer[] {2, 3, 4};
+			return new Integer[] {2, 3, 4, 5};
 		}
 		
 		@Override
@@ -170,10 +431,28 @@ public class CHFileHandling {
 			File locationFrom = Static.GetFileFromArgument(args[0].val(), env, t, null);
 			File locationTo = Static.GetFileFromArgument(args[1].val(), env, t, null);
 			boolean overWrite = args.length >= 3 && ArgumentValidation.getBooleanObject(args[2], t);
-			boolean createTargetDirs = args.length == 4 && ArgumentValidation.getBooleanObject(args[3], t);
+			boolean createTargetDirs = args.length >= 4 && ArgumentValidation.getBooleanObject(args[3], t);
+			Priority priority = (args.length == 5 ? getPriority(args[4], t) : Priority.BACKGROUND);
 			checkSecurity(locationFrom, env, t);
 			checkSecurity(locationTo, env, t);
 			
+			checkCopy(locationFrom, locationTo, createTargetDirs, t);
+			performCopy(locationFrom, locationTo, overWrite, priority, null, t);
+			return CVoid.VOID;
+		}
+		
+		/**
+		 * Checks whether the 'from' file or directory can be copied to the 'to' path, creating the parent directory
+		 * of the 'to' path if allowed.
+		 * @param locationFrom - The from file or directory.
+		 * @param locationTo - The to file or directory.
+		 * @param createTargetDirs - If {@code true}, the parent directory of the 'to' path is created if necessary.
+		 * @param t - The target.
+		 * @throws CREIOException When the copy is not possible.
+		 */
+		private static void checkCopy(File locationFrom, File locationTo, boolean createTargetDirs, Target t)
+				throws CREIOException {
+			
 			// Disallow copying a file/directory to itself.
 			if(locationFrom.getAbsolutePath().equals(locationTo.getAbsolutePath())) {
 				throw new CREIOException(
@@ -198,32 +477,50 @@ public class CHFileHandling {
 							"Could not create directory: '" + locationToParent.getAbsolutePath() + "'", t);
 				}
 			}
-			
-			// Perform the copy.
-			if(locationFrom.isFile()) {
-				try {
-					copyFile(locationFrom, locationTo, overWrite, t);
-				} catch (IOException e) {
-					throw new CREIOException("Could not copy file from: '" + locationFrom.getAbsolutePath()
-							+ "' to: '" + locationTo.getAbsolutePath() + "'. Message: " + e.getMessage(), t);
-				}
-			} else {
-				try {
-					if(!locationTo.exists() && !locationTo.mkdir()) {
-						throw new CREIOException(
-								"Could not create directory: '" + locationToParent.getAbsolutePath() + "'", t);
+		}
+		
+		/**
+		 * Copies the 'from' file or directory to the 'to' path and invalidates cached reads of the copied files.
+		 * @param locationFrom - The from file or directory.
+		 * @param locationTo - The to file or directory.
+		 * @param overWrite - If {@code true}, already existing files will be overwritten.
+		 * @param priority - The I/O priority of the copy.
+		 * @param job - The job to report progress to and to check for cancellation, or {@code null}.
+		 * @param t - The target.
+		 * @throws CREIOException When an I/O error occurs when copying a file or directory.
+		 * @throws CRESecurityException When the security manager disallows (a part of) the copy action.
+		 */
+		private static void performCopy(File locationFrom, File locationTo, boolean overWrite, Priority priority,
+				FileJob job, Target t) throws CREIOException, CRESecurityException {
+			try {
+				if(locationFrom.isFile()) {
+					try {
+						copyFile(locationFrom, locationTo, overWrite, priority, job, t);
+					} catch (IOException e) {
+						throw new CREIOException("Could not copy file from: '" + locationFrom.getAbsolutePath()
+								+ "' to: '" + locationTo.getAbsolutePath() + "'. Message: " + e.getMessage(), t);
 					}
-					for(File fromFile : locationFrom.listFiles()) {
-						File toFile = new File(locationTo, fromFile.getName());
-						copyFile(fromFile, toFile, overWrite, t);
+				} else {
+					try {
+						if(!locationTo.exists() && !locationTo.mkdir()) {
+							throw new CREIOException(
+									"Could not create directory: '" + locationTo.getAbsolutePath() + "'", t);
+						}
+						for(File fromFile : locationFrom.listFiles()) {
+							File toFile = new File(locationTo, fromFile.getName());
+							copyFile(fromFile, toFile, overWrite, priority, job, t);
+						}
+					} catch (IOException e) {
+						throw new CREIOException("Could not copy (some) file(s) from: '"
+								+ locationFrom.getAbsolutePath() + "' to: '" + locationTo.getAbsolutePath()
+								+ "'. Message: " + e.getMessage(), t);
 					}
-				} catch (IOException e) {
-					throw new CREIOException("Could not copy (some) file(s) from: '" + locationFrom.getAbsolutePath()
-							+ "' to: '" + locationTo.getAbsolutePath() + "'. Message: " + e.getMessage(), t);
 				}
+			} finally {
+				
+				// Invalidate cached reads of the copied file(s).
+				FileReadCache.getInstance().invalidate(locationTo);
 			}
-			
-			return CVoid.VOID;
 		}
 		
 		/**
@@ -233,11 +530,13 @@ public class CHFileHandling {
 		 * @param from - The from file or directory.
 		 * @param to - The to file or directory.
 		 * @param overWrite - If {@code true}, already existing files will be overwritten.
+		 * @param priority - The I/O priority of the copy.
+		 * @param job - The job to report progress to and to check for cancellation, or {@code null}.
 		 * @param t - The target.
 		 * @throws IOException When an I/O error occurs when copying a file or directory.
 		 * @throws CRESecurityException When the security manager disallows (a part of) the copy action.
 		 */
-		private static void copyFile(File from, File to, boolean overWrite, Target t)
+		private static void copyFile(File from, File to, boolean overWrite, Priority priority, FileJob job, Target t)
 				throws IOException, CRESecurityException {
 			if(from.isFile()) {
 				
@@ -247,7 +546,17 @@ public class CHFileHandling {
 							+ to.getAbsolutePath() + "'", t);
 				}
 				
-				Files.copy(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				if(job != null) {
+					job.checkCancelled();
+				}
+				long size = from.length();
+				IOThrottle.getInstance().copy(
+						from.toPath(), to.toPath(), priority, StandardCopyOption.REPLACE_EXISTING);
+				FileMetrics.addBytesRead(size);
+				FileMetrics.addBytesWritten(size);
+				if(job != null) {
+					job.fileDone(size);
+				}
 			} else if(from.isDirectory()) {
 				
 				// Create the 'to' directory.
@@ -264,14 +573,14 @@ public class CHFileHandling {
 						throw new CRESecurityException("Cannot overwrite existing file"
 								+ " (overwrite parameter is false): '" + subTo.getAbsolutePath() + "'", t);
 					}
-					copyFile(subFrom, subTo, overWrite, t);
+					copyFile(subFrom, subTo, overWrite, priority, job, t);
 				}
 			}
 		}
 		
 		@Override
 		public String docs() {
-			return "void {fromPath, toPath, [allowOverwrite], [createRequiredDirs]}"
+			return "void {fromPath, toPath, [allowOverwrite], [createRequiredDirs], [priority]}"
 					+ " Copies the file or directory (including contents) from the fromPath to the toPath."
 					+ " When copying a directory which's target already exists,"
 					+ " it will be merged with the existing directory. This also holds for subdirectories."
@@ -281,6 +590,8 @@ public class CHFileHandling {
 					+ " already exist. Defaults to false."
 					+ " If createRequiredDirs is true, the parent directory of toPath will be created if it does not"
 					+ " yet exist. Defaults to false."
+					+ " priority is one of INTERACTIVE or BACKGROUND and determines how the copy is rate limited when"
+					+ " an I/O throttle has been set using chf_io_throttle. Defaults to BACKGROUND."
 					+ " The paths are relative to the file that is being run, not CommandHelper."
 					+ " Throws a SecurityException if allowOverwrite is false and the file at toPath already exists"
 					+ " and is not a directory."
@@ -293,7 +604,7 @@ public class CHFileHandling {
 		@Override
 		@SuppressWarnings("unchecked")
 		public Class<? extends CREThrowable>[] thrown() {
-			return new Class[] {CRESecurityException.class, CREIOException.class};
+			return new Class[] {CRESecurityException.class, CREIOException.class, CREFormatException.class};
 		}
 		
 		@Override
@@ -307,47 +618,102 @@ public class CHFileHandling {
 		
 		@Override
 		public Integer[] numArgs() {
-			return new Integer[] {1, 2};
+			return new Integer[] {1, 2, 3};
 		}
 		
 		@Override
 		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
 			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
-			boolean allowRemoveDirContent = args.length == 2 && ArgumentValidation.getBooleanObject(args[1], t);
+			boolean allowRemoveDirContent = args.length >= 2 && ArgumentValidation.getBooleanObject(args[1], t);
+			Priority priority = (args.length == 3 ? getPriority(args[2], t) : Priority.BACKGROUND);
 			checkSecurity(location, env, t);
 			
-			// Check if the file/directory at the location exists.
-			if(!location.exists()) {
+			checkDelete(location, allowRemoveDirContent, t);
+			performDelete(location, priority, null, t);
+			return CVoid.VOID;
+		}
+		
+		/**
+		 * Checks whether the given file or directory can be deleted.
+		 * @param location - The file or directory to delete.
+		 * @param allowRemoveDirContent - If {@code true}, non-empty directories may be deleted.
+		 * @param t - The target.
+		 * @throws CREIOException When the file does not exist.
+		 * @throws CRESecurityException When the file is a non-empty directory and allowRemoveDirContent is false.
+		 */
+		private static void checkDelete(File location, boolean allowRemoveDirContent, Target t)
+				throws CREIOException, CRESecurityException {
+			
+			// Check if the file/directory at the location exists. A symbolic link exists even if its target does not.
+			if(!Files.exists(location.toPath(), LinkOption.NOFOLLOW_LINKS)) {
 				throw new CREIOException("The given file does not exist: '" + location.getAbsolutePath() + "'", t);
 			}
 			
 			// Check if the file is a non-empty directory and allowRemoveFolderContent is false.
-			if(!allowRemoveDirContent && location.isDirectory() && location.listFiles().length != 0) {
+			if(!allowRemoveDirContent && Files.isDirectory(location.toPath(), LinkOption.NOFOLLOW_LINKS)
+					&& location.listFiles().length != 0) {
 				throw new CRESecurityException("The given file is a non-empty directory and allowRemoveFolderContent"
 						+ " is not enabled: '" + location.getAbsolutePath() + "'", t);
 			}
-			
-			// Perform the deletion.
-			if(!deleteFile(location)) {
-				throw new CREIOException(
-						"Could not delete (some) file(s) from: '" + location.getAbsolutePath() + "'", t);
+		}
+		
+		/**
+		 * Deletes the given file or directory and invalidates cached reads of the deleted files.
+		 * @param location - The file or directory to delete.
+		 * @param priority - The I/O priority of the deletion.
+		 * @param job - The job to report progress to and to check for cancellation, or {@code null}.
+		 * @param t - The target.
+		 * @throws CREIOException When (some of) the files could not be deleted.
+		 */
+		private static void performDelete(File location, Priority priority, FileJob job, Target t)
+				throws CREIOException {
+			try {
+				if(!deleteFile(location, priority, job)) {
+					throw new CREIOException(
+							"Could not delete (some) file(s) from: '" + location.getAbsolutePath() + "'", t);
+				}
+			} catch (InterruptedIOException e) {
+				throw new CREIOException("Interrupted while deleting (some) file(s) from: '"
+						+ location.getAbsolutePath() + "'", t);
+			} finally {
+				
+				// Invalidate cached reads of the deleted file(s).
+				FileReadCache.getInstance().invalidate(location);
 			}
-			
-			return CVoid.VOID;
 		}
 		
 		/**
-		 * Deletes the given file or directory.
+		 * Deletes the given file or directory. Symbolic links are deleted themselves and are never followed.
 		 * @param file - The file to delete.
+		 * @param priority - The I/O priority of the deletion.
+		 * @param job - The job to report progress to and to check for cancellation, or {@code null}.
 		 * @return {@code true} on success, {@code false} when at least one file could not be deleted.
+		 * @throws InterruptedIOException When interrupted while waiting for the I/O throttle.
 		 */
-		private static boolean deleteFile(File file) {
-			if(file.isFile()) {
-				return file.delete();
+		private static boolean deleteFile(File file, Priority priority, FileJob job) throws InterruptedIOException {
+			if(job != null) {
+				job.checkCancelled();
+			}
+			IOThrottle.getInstance().acquire(priority, 1, 0);
+			if(Files.isSymbolicLink(file.toPath())) {
+				
+				// Delete the link itself, never the contents of its target.
+				boolean success = file.delete();
+				if(job != null) {
+					job.fileDone(0);
+				}
+				return success;
+			} else if(file.isFile()) {
+				long size = file.length();
+				boolean success = file.delete();
+				if(job != null) {
+					job.fileDone(size);
+				}
+				return success;
 			} else if(file.isDirectory()) {
 				boolean success = true;
 				for(File subFile : file.listFiles()) {
-					if(!deleteFile(subFile)) {
+					if(!deleteFile(subFile, priority, job)) {
 						success = false; // Don't just throw an exception right away to delete as much as possible.
 					}
 				}
@@ -358,10 +724,14 @@ public class CHFileHandling {
 		
 		@Override
 		public String docs() {
-			return "void {path, [allowRemoveDirContent]} Deletes the file or directory at the given path."
+			return "void {path, [allowRemoveDirContent], [priority]} Deletes the file or directory at the given path."
 				+ " The path is relative to the file that is being run, not CommandHelper."
 				+ " If allowRemoveDirContent is true, directory contents will be removed if a non-empty directory is"
 				+ " given. Defaults to false."
+				+ " priority is one of INTERACTIVE or BACKGROUND and determines how the deletion is rate limited when"
+				+ " an I/O throttle has been set using chf_io_throttle. Defaults to BACKGROUND."
+				+ " Symbolic links are deleted themselves and are never followed, so the files and directories they"
+				+ " point to are left untouched. This also holds for symbolic links within a deleted directory."
 				+ " Throws a SecurityException If allowRemoveDirContent is false and the given file is a"
 				+ " non-empty directory."
 				+ " Throws an IOException if the file does not exist or (a part of the files) could not be removed."
@@ -372,7 +742,7 @@ public class CHFileHandling {
 		@Override
 		@SuppressWarnings("unchecked")
 		public Class<? extends CREThrowable>[] thrown() {
-			return new Class[] {CRESecurityException.class, CREIOException.class};
+			return new Class[] {CRESecurityException.class, CREIOException.class, CREFormatException.class};
 		}
 		
 		@Override
@@ -386,14 +756,19 @@ public class CHFileHandling {
 		
 		@Override
 		public Integer[] numArgs() {
-			return new Integer[] {1, 2};
+			return new Integer[] {1, 2, 3, 4};
 		}
 		
 		@Override
 		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
 			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
-			boolean createRequiredDirs = args.length == 2 && ArgumentValidation.getBooleanObject(args[1], t);
+			boolean createRequiredDirs = args.length >= 2 && ArgumentValidation.getBooleanObject(args[1], t);
+			long size = (args.length >= 3 ? ArgumentValidation.getInt(args[2], t) : 0);
+			boolean sparse = args.length == 4 && ArgumentValidation.getBooleanObject(args[3], t);
 			checkSecurity(location, env, t);
+			if(size < 0) {
+				throw new CRERangeException("The file size cannot be negative: " + size + ".", t);
+			}
 			
 			// Check if the file/directory at the location exists.
 			if(location.exists()) {
@@ -415,7 +790,13 @@ public class CHFileHandling {
 			
 			// Perform the file creation.
 			try {
-				location.createNewFile();
+				if(size == 0) {
+					location.createNewFile();
+				} else if(sparse) {
+					createSparseFile(location.toPath(), size);
+				} else {
+					createPreallocatedFile(location.toPath(), size);
+				}
 			} catch (IOException e) {
 				throw new CREIOException("Could not create file at: '"
 						+ location.getAbsolutePath() + "'. Message: "  + e.getMessage(), t);
@@ -424,10 +805,81 @@ public class CHFileHandling {
 			return CVoid.VOID;
 		}
 		
+		/**
+		 * Creates a sparse file of the given size. On file systems that do not support sparse files, this results in a
+		 * regular file of the given size. The file is removed when setting its size fails.
+		 * @param path - The path of the file to create.
+		 * @param size - The size of the file.
+		 * @throws IOException When an I/O error occurs while creating the file, or when the file already exists.
+		 */
+		private static void createSparseFile(Path path, long size) throws IOException {
+			FileChannel channel = FileChannel.open(path,
+					StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SPARSE);
+			boolean success = false;
+			try {
+				
+				// Writing the last byte sets the file size without allocating the preceding blocks.
+				channel.write(ByteBuffer.allocate(1), size - 1);
+				success = true;
+			} finally {
+				channel.close();
+				if(!success) {
+					Files.deleteIfExists(path);
+				}
+			}
+		}
+		
+		/**
+		 * Creates a file of the given size, allocating all of its blocks up front by writing zeros. This allows the
+		 * file system to allocate the file contiguously, and avoids block allocation and metadata updates when the
+		 * file is written later.
+		 * Java has no portable fallocate, and {@link java.io.RandomAccessFile#setLength(long)} only extends the file
+		 * without allocating its blocks on common file systems, which is what {@link #createSparseFile(Path, long)}
+		 * already does. Therefore, writing zeros is the only way to preallocate and no setLength fallback is used.
+		 * The zeros are written in chunks with {@link Priority#BACKGROUND} priority through the {@link IOThrottle}.
+		 * The file is removed when the allocation fails, for example because the disk is full.
+		 * @param path - The path of the file to create.
+		 * @param size - The size of the file.
+		 * @throws IOException When an I/O error occurs while creating the file, or when the file already exists.
+		 */
+		private static void createPreallocatedFile(Path path, long size) throws IOException {
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			boolean success = false;
+			try {
+				ByteBuffer zeros = ByteBuffer.allocateDirect((int) Math.min(PREALLOCATION_CHUNK_SIZE, size));
+				long position = 0;
+				while(position < size) {
+					int chunkSize = (int) Math.min(
+							Math.min(zeros.capacity(), IOThrottle.getInstance().getChunkSize()), size - position);
+					IOThrottle.getInstance().acquire(Priority.BACKGROUND, (position == 0 ? 1 : 0), chunkSize);
+					zeros.clear();
+					zeros.limit(chunkSize);
+					while(zeros.hasRemaining()) {
+						position += channel.write(zeros, position);
+					}
+					FileMetrics.addBytesWritten(chunkSize);
+				}
+				channel.force(false);
+				success = true;
+			} finally {
+				channel.close();
+				if(!success) {
+					Files.deleteIfExists(path);
+				}
+			}
+		}
+		
 		@Override
 		public String docs() {
-			return "void {path, [createRequiredDirs]} Creates a file at the given path."
+			return "void {path, [createRequiredDirs], [size], [sparse]} Creates a file at the given path."
 				+ " If createRequiredDirs is true, required parent directories will be created. Defaults to false."
+				+ " If a size is given, the file is created with the given size in bytes, filled with zeros."
+				+ " Unless sparse is true, the disk space for the file is allocated up front, so that writing to the"
+				+ " file later does not have to grow it. This is done by writing zeros, which is rate limited with"
+				+ " BACKGROUND priority when an I/O throttle has been set using chf_io_throttle."
+				+ " If sparse is true, the file is created as a sparse file,"
+				+ " allocating disk space only when it is written to, on file systems that support this."
+				+ " size defaults to 0 and sparse defaults to false."
 				+ " The path is relative to the file that is being run, not CommandHelper."
 				+ " Throws a SecurityException if createRequiredDirs is false and the parent directory of the given"
 				+ " path does not exist."
@@ -439,7 +891,7 @@ public class CHFileHandling {
 		@Override
 		@SuppressWarnings("unchecked")
 		public Class<? extends CREThrowable>[] thrown() {
-			return new Class[] {CRESecurityException.class, CREIOException.class};
+			return new Class[] {CRESecurityException.class, CREIOException.class, CRERangeException.class};
 		}
 		
 		@Override
@@ -526,14 +978,15 @@ public class CHFileHandling {
 		
 		@Override
 		public Integer[] numArgs() {
-			return new Integer[] {2, 3};
+			return new Integer[] {2, 3, 4};
 		}
 		
 		@Override
 		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
 			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
 			String content = args[1].val();
-			String writeOption = (args.length < 3 ? null : args[2].val());
+			String writeOption = (args.length < 3 || args[2] instanceof CNull ? null : args[2].val());
+			Priority priority = (args.length == 4 ? getPriority(args[3], t) : Priority.INTERACTIVE);
 			checkSecurity(location, env, t);
 			OpenOption[] options;
 			if(writeOption == null) {
@@ -554,18 +1007,27 @@ public class CHFileHandling {
 			}
 			location.getParentFile().mkdirs();
 			try {
-				Files.write(location.toPath(), content.getBytes(), options);
+				byte[] bytes = content.getBytes();
+				IOThrottle.getInstance().acquire(priority, 1, bytes.length);
+				Files.write(location.toPath(), bytes, options);
+				FileMetrics.addBytesWritten(bytes.length);
 			} catch (IOException e) {
 				throw new CREIOException("Could not write to file. Message: " + e.getMessage(), t);
 			}
 			
+			// Invalidate cached reads of the written file.
+			FileReadCache.getInstance().invalidate(location);
+			
 			return CVoid.VOID;
 		}
 		
 		@Override
 		public String docs() {
-			return "void {path, content, [option]} Writes the given content to the file at the given path."
-				+ " The option can be one of OVERWRITE/APPEND."
+			return "void {path, content, [option], [priority]} Writes the given content to the file at the given path."
+				+ " The option can be one of OVERWRITE/APPEND, or null."
+				+ " priority is one of INTERACTIVE or BACKGROUND and determines how the write is rate limited when"
+				+ " an I/O throttle has been set using chf_io_throttle. Defaults to INTERACTIVE."
+				+ " INTERACTIVE writes never wait for the throttle, but they delay BACKGROUND operations."
 				+ " Required parent directories will be created if necessary."
 				+ " If the file already exists and no option is given, a SecurityException is thrown."
 				+ " The path is relative to the file that is being run, not CommandHelper."
@@ -591,7 +1053,7 @@ public class CHFileHandling {
 		
 		@Override
 		public Integer[] numArgs() {
-			return new Integer[] {2, 3};
+			return new Integer[] {2, 3, 4};
 		}
 		
 		@Override
@@ -599,28 +1061,40 @@ public class CHFileHandling {
 			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
 			CByteArray content = ArgumentValidation.getByteArray(args[1], t);
 			boolean overwrite = args.length >= 3 && ArgumentValidation.getBooleanish(args[2], t);
+			Priority priority = (args.length == 4 ? getPriority(args[3], t) : Priority.INTERACTIVE);
 			checkSecurity(location, env, t);
 			if(!overwrite && location.exists()) {
 				throw new CRESecurityException("The file already exists and the overwrite option is false: '"
 						+ location.getAbsolutePath() + "'.", t);
 			}
 			location.getParentFile().mkdirs();
-			try(OutputStream outStream = new GZIPOutputStream(new FileOutputStream(location))) {
-				outStream.write(content.asByteArrayCopy());
+			try {
+				byte[] bytes = content.asByteArrayCopy();
+				IOThrottle.getInstance().acquire(priority, 1, bytes.length);
+				try(OutputStream outStream = new GZIPOutputStream(new FileOutputStream(location))) {
+					outStream.write(bytes);
+				}
+				FileMetrics.addBytesWritten(bytes.length);
 			} catch (IOException e) {
 				throw new CREIOException("Could not write to file. Message: " + e.getMessage(), t);
 			}
 			
+			// Invalidate cached reads of the written file.
+			FileReadCache.getInstance().invalidate(location);
+			
 			return CVoid.VOID;
 		}
 		
 		@Override
 		public String docs() {
-			return "void {path, content, [overwrite]}"
+			return "void {path, content, [overwrite], [priority]}"
 					+ " Gzips and writes the given byte array to the file at the given path."
 					+ " Required parent directories will be created if necessary."
 					+ " If the file already exists and overwrite is false, a SecurityException is thrown."
 					+ " Overwrite defaults to false."
+					+ " priority is one of INTERACTIVE or BACKGROUND and determines how the write is rate limited when"
+					+ " an I/O throttle has been set using chf_io_throttle. Defaults to INTERACTIVE."
+					+ " INTERACTIVE writes never wait for the throttle, but they delay BACKGROUND operations."
 					+ " The path is relative to the file that is being run, not CommandHelper."
 					+ " If the content is not a byte_array, a CastException is thrown."
 					+ " If the file specified is not within base-dir (as specified in the preferences file),"
@@ -646,7 +1120,7 @@ public class CHFileHandling {
 		
 		@Override
 		public Integer[] numArgs() {
-			return new Integer[] {2, 3};
+			return new Integer[] {2, 3, 4};
 		}
 		
 		@Override
@@ -654,28 +1128,40 @@ public class CHFileHandling {
 			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
 			CByteArray content = ArgumentValidation.getByteArray(args[1], t);
 			boolean overwrite = args.length >= 3 && ArgumentValidation.getBooleanish(args[2], t);
+			Priority priority = (args.length == 4 ? getPriority(args[3], t) : Priority.INTERACTIVE);
 			checkSecurity(location, env, t);
 			if(!overwrite && location.exists()) {
 				throw new CRESecurityException("The file already exists and the overwrite option is false: '"
 						+ location.getAbsolutePath() + "'.", t);
 			}
 			location.getParentFile().mkdirs();
-			try(OutputStream outStream = new BufferedOutputStream(new FileOutputStream(location))) {
-				outStream.write(content.asByteArrayCopy());
+			try {
+				byte[] bytes = content.asByteArrayCopy();
+				IOThrottle.getInstance().acquire(priority, 1, bytes.length);
+				try(OutputStream outStream = new BufferedOutputStream(new FileOutputStream(location))) {
+					outStream.write(bytes);
+				}
+				FileMetrics.addBytesWritten(bytes.length);
 			} catch (IOException e) {
 				throw new CREIOException("Could not write to file. Message: " + e.getMessage(), t);
 			}
 			
+			// Invalidate cached reads of the written file.
+			FileReadCache.getInstance().invalidate(location);
+			
 			return CVoid.VOID;
 		}
 		
 		@Override
 		public String docs() {
-			return "void {path, content, [overwrite]}"
+			return "void {path, content, [overwrite], [priority]}"
 					+ " Writes the given byte array to the file at the given path."
 					+ " Required parent directories will be created if necessary."
 					+ " If the file already exists and overwrite is false, a SecurityException is thrown."
 					+ " Overwrite defaults to false."
+					+ " priority is one of INTERACTIVE or BACKGROUND and determines how the write is rate limited when"
+					+ " an I/O throttle has been set using chf_io_throttle. Defaults to INTERACTIVE."
+					+ " INTERACTIVE writes never wait for the throttle, but they delay BACKGROUND operations."
 					+ " The path is relative to the file that is being run, not CommandHelper."
 					+ " If the content is not a byte_array, a CastException is thrown."
 					+ " If the file specified is not within base-dir (as specified in the preferences file),"
@@ -696,77 +1182,243 @@ public class CHFileHandling {
 		}
 	}
 	
-	// TODO - Decide what to do with this. If re-adding this, then it should be platform independent.
-//	@api
-//	public static class chf_rename extends FileFunction {
-//		
-//		@Override
-//		public Integer[] numArgs() {
-//			return new Integer[] {2}; // TODO Add 3 once the move with overwrite works.
-//		}
-//		
-//		@Override
-//		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
-//			File locationOld = Static.GetFileFromArgument(args[0].val(), env, t, null);
-//			File locationNew = Static.GetFileFromArgument(args[1].val(), env, t, null);
-//			boolean allowOverwrite = args.length == 3 && ArgumentValidation.getBooleanObject(args[2], t);
-//			checkSecurity(locationOld, env, t);
-//			checkSecurity(locationNew, env, t);
-//			
-//			// Check if the parent directory is the same (it should be as this is a rename only).
-//			if(!locationOld.getParentFile().getAbsolutePath().equals(locationNew.getParentFile().getAbsolutePath())) {
-//				throw new CRESecurityException("The new filename has to be in the same directory.", t);
-//			}
-//			
-//			// Check if the old location exists.
-//			if(!locationOld.exists()) {
-//				throw new CREIOException(
-//						"The file to rename does not exist: " + locationOld.getAbsolutePath() + ".", t);
-//			}
-//			
-//			// Check if the new location already exists without overwrite enabled.
-//			if(locationNew.exists() && !allowOverwrite) {
-//				throw new CRESecurityException("The file already exists and no OVERWRITE option has been found: "
-//						+ locationNew.getAbsolutePath() + ".", t);
-//			}
-//			
-//			// Rename the file.
-//			if(!locationOld.renameTo(locationNew)) {
-//				throw new CREIOException("Could not rename file: " + locationOld.getAbsolutePath()
-//						+ " to " + locationNew.getAbsolutePath() + ".", t);
-//			}
-//			
-//			return CVoid.VOID;
-//		}
-//		
-//		@Override
-//		public String docs() {
-//			return "void {filename, newfilename, [overwrite]} Renames the filename to newfilename."
-//				+ " If the file already exists and overwrite is false, a SecurityException is thrown."
-//				+ " The path is relative to the file that is being run, not CommandHelper."
-//				+ " If the file specified is not within base-dir (as specified in the preferences file), a SecurityException is thrown."
-//			    + " If the renaming itself fails, an IOException is thrown.";
-//		}
-//		
-//		@Override
-//		@SuppressWarnings("unchecked")
-//		public Class<? extends CREThrowable>[] thrown() {
-//			return new Class[] {CRESecurityException.class, CREIOException.class};
-//		}
-//		
-//		@Override
-//		public Version since() {
-//			return MSVersion.V3_3_1;
-//		}
-//	}
-	
-	// TODO - Decide what to do with this. Moving directories with contents only sometimes works without copying.
-//	@api
-//	public static class chf_move extends FileFunction {
-//		
-//		@Override
+	@api
+	public static class chf_read extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
+			checkSecurity(location, env, t);
+			if(!location.isFile()) {
+				throw new CREIOException("File at location does not exist or is a directory: '"
+						+ location.getAbsolutePath() + "'.", t);
+			}
+			try {
+				byte[] bytes = FileReadCache.getInstance().read(location);
+				FileMetrics.addBytesRead(bytes.length);
+				return new CString(new String(bytes), t);
+			} catch (IOException e) {
+				throw new CREIOException("Could not read file. Message: " + e.getMessage(), t);
+			}
+		}
+		
+		@Override
+		public String docs() {
+			return "string {path} Returns the contents of the file at the given path."
+					+ " If the read cache is enabled (see chf_read_cache_configure), unchanged files are served from"
+					+ " the cache."
+					+ " The path is relative to the file that is being run, not CommandHelper."
+					+ " If the file specified is not within base-dir (as specified in the preferences file),"
+					+ " a SecurityException is thrown."
+					+ " If the file does not exist, is a directory or the reading itself fails,"
+					+ " an IOException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRESecurityException.class, CREIOException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_read_binary extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
+			checkSecurity(location, env, t);
+			if(!location.isFile()) {
+				throw new CREIOException("File at location does not exist or is a directory: '"
+						+ location.getAbsolutePath() + "'.", t);
+			}
+			try {
+				
+				// Copy the content, as the returned byte array can be modified and might be shared with the cache.
+				byte[] bytes = FileReadCache.getInstance().read(location);
+				FileMetrics.addBytesRead(bytes.length);
+				return CByteArray.wrap(bytes.clone(), t);
+			} catch (IOException e) {
+				throw new CREIOException("Could not read file. Message: " + e.getMessage(), t);
+			}
+		}
+		
+		@Override
+		public String docs() {
+			return "byte_array {path} Returns the contents of the file at the given path as a byte array."
+					+ " If the read cache is enabled (see chf_read_cache_configure), unchanged files are served from"
+					+ " the cache."
+					+ " The path is relative to the file that is being run, not CommandHelper."
+					+ " If the file specified is not within base-dir (as specified in the preferences file),"
+					+ " a SecurityException is thrown."
+					+ " If the file does not exist, is a directory or the reading itself fails,"
+					+ " an IOException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRESecurityException.class, CREIOException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_read_cache_configure extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1, 2};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			long maxBytes = ArgumentValidation.getInt(args[0], t);
+			long maxFileSize = (args.length == 2 ? ArgumentValidation.getInt(args[1], t) : 65536);
+			if(maxBytes < 0 || maxFileSize < 0) {
+				throw new CRERangeException("The cache size and maximum file size cannot be negative.", t);
+			}
+			FileReadCache.getInstance().configure(maxBytes, maxFileSize);
+			return CVoid.VOID;
+		}
+		
+		@Override
+		public String docs() {
+			return "void {maxBytes, [maxFileSize]} Configures the in-memory cache used by chf_read and"
+					+ " chf_read_binary. The cache holds at most maxBytes bytes of file contents, evicting the least"
+					+ " recently used files first. Files larger than maxFileSize are never cached."
+					+ " maxFileSize defaults to 65536 (64 KiB)."
+					+ " A maxBytes of 0 disables the cache, which is the default."
+					+ " Cached files are validated against their last modified time and size on every read, and are"
+					+ " invalidated when they are changed through CHFile functions."
+					+ " Reconfiguring the cache clears it."
+					+ " Throws a RangeException if maxBytes or maxFileSize is negative.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRERangeException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_read_cache_stats extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {0};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			FileReadCache cache = FileReadCache.getInstance();
+			CArray ret = CArray.GetAssociativeArray(t);
+			synchronized(cache) {
+				ret.set("enabled", CBoolean.GenerateCBoolean(cache.isEnabled(), t), t);
+				ret.set("maxbytes", new CInt(cache.getMaxBytes(), t), t);
+				ret.set("maxfilesize", new CInt(cache.getMaxFileSize(), t), t);
+				ret.set("residentbytes", new CInt(cache.getResidentBytes(), t), t);
+				ret.set("entries", new CInt(cache.getEntryCount(), t), t);
+				ret.set("hits", new CInt(cache.getHits(), t), t);
+				ret.set("misses", new CInt(cache.getMisses(), t), t);
+				ret.set("hitratio", new CDouble(cache.getHitRatio(), t), t);
+			}
+			return ret;
+		}
+		
+		@Override
+		public String docs() {
+			return "array {} Returns an associative array containing statistics of the chf_read cache."
+					+ " Keys are: enabled, maxbytes, maxfilesize, residentbytes, entries, hits, misses and hitratio.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_io_throttle extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1, 2};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			long bytesPerSecond = ArgumentValidation.getInt(args[0], t);
+			long opsPerSecond = (args.length == 2 ? ArgumentValidation.getInt(args[1], t) : 0);
+			if(bytesPerSecond < 0 || opsPerSecond < 0) {
+				throw new CRERangeException("The bytes and operations per second limits cannot be negative.", t);
+			}
+			IOThrottle.getInstance().configure(bytesPerSecond, opsPerSecond);
+			return CVoid.VOID;
+		}
+		
+		@Override
+		public String docs() {
+			return "void {bytesPerSecond, [opsPerSecond]} Limits the disk I/O rate of chf_copy, chf_move, chf_delete"
+					+ " and the chf_write functions to the given amount of bytes and file operations per second."
+					+ " A limit of 0 means unlimited. Both limits default to 0, disabling the throttle."
+					+ " Operations with INTERACTIVE priority never wait for the throttle, so they never block the"
+					+ " server thread. Their I/O still counts towards the limits, and operations with BACKGROUND"
+					+ " priority wait until the I/O of all operations fits within the limits. This way, long"
+					+ " background copies and deletions yield to small writes."
+					+ " Throws a RangeException if bytesPerSecond or opsPerSecond is negative.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRERangeException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	// TODO - Decide what to do with this. If re-adding this, then it should be platform independent.
+//	@api
+//	public static class chf_rename extends FileFunction {
+//		
+//		@Override
 //		public Integer[] numArgs() {
-//			return new Integer[] {2, 3};
+//			return new Integer[] {2}; // TODO Add 3 once the move with overwrite works.
 //		}
 //		
 //		@Override
@@ -777,63 +1429,38 @@ public class CHFileHandling {
 //			checkSecurity(locationOld, env, t);
 //			checkSecurity(locationNew, env, t);
 //			
-//			// Check if the locations are the same (Just return if the move doesn't do anything).
-//			if(locationOld.getAbsolutePath().equals(locationNew.getAbsolutePath())) {
-//				return CVoid.VOID;
+//			// Check if the parent directory is the same (it should be as this is a rename only).
+//			if(!locationOld.getParentFile().getAbsolutePath().equals(locationNew.getParentFile().getAbsolutePath())) {
+//				throw new CRESecurityException("The new filename has to be in the same directory.", t);
 //			}
 //			
 //			// Check if the old location exists.
 //			if(!locationOld.exists()) {
-//				throw new CREIOException("The file to move does not exist: " + locationOld.getAbsolutePath() + ".", t);
+//				throw new CREIOException(
+//						"The file to rename does not exist: " + locationOld.getAbsolutePath() + ".", t);
 //			}
 //			
 //			// Check if the new location already exists without overwrite enabled.
 //			if(locationNew.exists() && !allowOverwrite) {
-//				throw new CRESecurityException("Cannot overwrite existing file (overwrite is false): "
+//				throw new CRESecurityException("The file already exists and no OVERWRITE option has been found: "
 //						+ locationNew.getAbsolutePath() + ".", t);
 //			}
 //			
-//			// Move the file.
-//			// TODO - Test this. Directories are moved when the OS can move them without having to change the contents.
-//			try {
-//				if(allowOverwrite) {
-//					Files.move(locationOld.toPath(), locationNew.toPath(), StandardCopyOption.REPLACE_EXISTING);
-////					moveFile(locationOld, locationNew, StandardCopyOption.REPLACE_EXISTING);
-//				} else {
-//					Files.move(locationOld.toPath(), locationNew.toPath());
-////					moveFile(locationOld, locationNew);
-//				}
-//			} catch (IOException e) {
-//				throw new CREIOException("Could not move one or more file(s) from: " + locationOld.getAbsolutePath()
-//						+ " to " + locationNew.getAbsolutePath() + ". Reason: " + e.getMessage(), t);
+//			// Rename the file.
+//			if(!locationOld.renameTo(locationNew)) {
+//				throw new CREIOException("Could not rename file: " + locationOld.getAbsolutePath()
+//						+ " to " + locationNew.getAbsolutePath() + ".", t);
 //			}
 //			
 //			return CVoid.VOID;
 //		}
 //		
-////		private static void moveFile(File locationOld, File locationNew, CopyOption... options) throws IOException {
-////			if(locationOld.isFile()) {
-////				Files.move(locationOld.toPath(), locationNew.toPath(), options);
-////			} else {
-////				
-////				// Move directory contents.
-////				for(File subOld : locationOld.listFiles()) {
-////					File subNew = new File(locationNew.getAbsoluteFile(), subOld.getName());
-////					if(!subNew.mkdir()) { // TODO - Check if this is the right dir to make. I think this should happen before the loop.
-////						throw new IOException("Could not create directory (does its parent exist?): " + subNew.getAbsolutePath());
-////					}
-////					moveFile(subOld, subNew, options);
-////				}
-////			}
-////		}
-//		
 //		@Override
-//		public String docs() { // TODO - Wrong docs.
+//		public String docs() {
 //			return "void {filename, newfilename, [overwrite]} Renames the filename to newfilename."
 //				+ " If the file already exists and overwrite is false, a SecurityException is thrown."
 //				+ " The path is relative to the file that is being run, not CommandHelper."
-//				+ " If the file specified is not within base-dir (as specified in the preferences file),"
-//				+ " a SecurityException is thrown."
+//				+ " If the file specified is not within base-dir (as specified in the preferences file), a SecurityException is thrown."
 //			    + " If the renaming itself fails, an IOException is thrown.";
 //		}
 //		
@@ -849,6 +1476,1124 @@ public class CHFileHandling {
 //		}
 //	}
 	
+	@api
+	public static class chf_move extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {2, 3, 4, 5};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			File locationFrom = Static.GetFileFromArgument(args[0].val(), env, t, null);
+			File locationTo = Static.GetFileFromArgument(args[1].val(), env, t, null);
+			boolean overWrite = args.length >= 3 && ArgumentValidation.getBooleanObject(args[2], t);
+			boolean createTargetDirs = args.length >= 4 && ArgumentValidation.getBooleanObject(args[3], t);
+			Priority priority = (args.length == 5 ? getPriority(args[4], t) : Priority.BACKGROUND);
+			checkSecurity(locationFrom, env, t);
+			checkSecurity(locationTo, env, t);
+			
+			// Disallow moving a file/directory to itself.
+			if(locationFrom.getAbsolutePath().equals(locationTo.getAbsolutePath())) {
+				throw new CREIOException(
+						"Cannot move file or directory to itself: '" + locationFrom.getAbsolutePath() + "'", t);
+			}
+			
+			// Check if the file/directory at locationFrom exists.
+			if(!locationFrom.exists()) {
+				throw new CREIOException(
+						"File or directory at 'fromPath' does not exist: '" + locationFrom.getAbsolutePath() + "'", t);
+			}
+			
+			// Disallow moving a directory into one of its own subdirectories.
+			if(locationFrom.isDirectory() && locationTo.getAbsolutePath().startsWith(
+					locationFrom.getAbsolutePath() + File.separator)) {
+				throw new CREIOException("Cannot move directory into itself: '" + locationFrom.getAbsolutePath()
+						+ "' to: '" + locationTo.getAbsolutePath() + "'", t);
+			}
+			
+			// Check if the parent directory of locationTo exists.
+			File locationToParent = locationTo.getParentFile();
+			if(locationToParent != null && !locationToParent.exists()) {
+				if(!createTargetDirs) {
+					throw new CREIOException(
+							"Target directory does not exist: '" + locationToParent.getAbsolutePath() + "'", t);
+				}
+				if(!locationToParent.mkdirs()) {
+					throw new CREIOException(
+							"Could not create directory: '" + locationToParent.getAbsolutePath() + "'", t);
+				}
+			}
+			
+			// Check for disallowed overwrites before moving anything, so that the move does not end up half done.
+			if(!overWrite) {
+				checkOverwrite(locationFrom, locationTo, t);
+			}
+			
+			// Perform the move.
+			try {
+				moveFile(locationFrom, locationTo, priority);
+			} catch (IOException e) {
+				throw new CREIOException("Could not move (some) file(s) from: '" + locationFrom.getAbsolutePath()
+						+ "' to: '" + locationTo.getAbsolutePath() + "'. Message: " + e.getMessage(), t);
+			}
+			
+			// Invalidate cached reads of the moved file(s).
+			FileReadCache.getInstance().invalidate(locationFrom);
+			FileReadCache.getInstance().invalidate(locationTo);
+			
+			return CVoid.VOID;
+		}
+		
+		/**
+		 * Checks whether moving the 'from' file or directory to the 'to' path would overwrite any existing file.
+		 * @param from - The from file or directory.
+		 * @param to - The to file or directory.
+		 * @param t - The target.
+		 * @throws CRESecurityException When an existing file would be overwritten.
+		 */
+		private static void checkOverwrite(File from, File to, Target t) throws CRESecurityException {
+			boolean fromIsDir = Files.isDirectory(from.toPath(), LinkOption.NOFOLLOW_LINKS);
+			boolean toIsDir = Files.isDirectory(to.toPath(), LinkOption.NOFOLLOW_LINKS);
+			if(!fromIsDir) {
+				if(!toIsDir && Files.exists(to.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+					throw new CRESecurityException("Cannot overwrite existing file (overwrite parameter is false): '"
+							+ to.getAbsolutePath() + "'", t);
+				}
+			} else if(toIsDir) {
+				for(File subFrom : from.listFiles()) {
+					checkOverwrite(subFrom, new File(to, subFrom.getName()), t);
+				}
+			}
+		}
+		
+		/**
+		 * Moves the 'from' file or directory to the 'to' path, overwriting any existing files.
+		 * The name for the moved file or directory should be provided in the 'to' path.
+		 * Directories are merged if they already exist. Symbolic links are moved as links and are never followed.
+		 * A move is attempted as an atomic rename first. When that is not possible because 'from' and 'to' are on
+		 * different file stores, the files are copied in parallel and the source is only deleted once all files have
+		 * been copied.
+		 * @param from - The from file or directory.
+		 * @param to - The to file or directory.
+		 * @param priority - The I/O priority of the move.
+		 * @throws IOException When an I/O error occurs when moving a file or directory.
+		 */
+		private static void moveFile(File from, File to, Priority priority) throws IOException {
+			boolean fromIsDir = Files.isDirectory(from.toPath(), LinkOption.NOFOLLOW_LINKS);
+			boolean toIsDir = Files.isDirectory(to.toPath(), LinkOption.NOFOLLOW_LINKS);
+			if(!fromIsDir && toIsDir) {
+				throw new IOException("Cannot replace directory with file: '" + to.getAbsolutePath() + "'.");
+			}
+			if(fromIsDir && !toIsDir && Files.exists(to.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+				throw new IOException("Cannot replace file with directory: '" + to.getAbsolutePath() + "'.");
+			}
+			
+			// Attempt an atomic rename. This replaces existing files and does not touch the file contents.
+			if(!toIsDir) {
+				IOThrottle.getInstance().acquire(priority, 1, 0);
+				try {
+					Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+					return;
+				} catch (AtomicMoveNotSupportedException e) {
+					copyThenDelete(from, to, priority);
+					return;
+				}
+			}
+			
+			// Merge the 'from' directory into the existing 'to' directory.
+			for(File subFrom : from.listFiles()) {
+				moveFile(subFrom, new File(to, subFrom.getName()), priority);
+			}
+			if(!from.delete()) {
+				throw new IOException("Could not delete directory: '" + from.getAbsolutePath() + "'.");
+			}
+		}
+		
+		/**
+		 * Copies the 'from' file or directory to the 'to' path in parallel and deletes 'from' afterwards.
+		 * Every file is copied to a temporary file next to its target first, which is then renamed to its target.
+		 * This ensures that a target file is either absent, the old file or the complete copy.
+		 * The source is only deleted when all files have been copied and the target directories have been forced to
+		 * disk, so a crash never leaves a file in neither location. Directories are not forced on platforms that
+		 * cannot open them, such as Windows. Symbolic links are copied as links, so their targets are neither copied
+		 * nor deleted.
+		 * @param from - The from file or directory.
+		 * @param to - The to file or directory.
+		 * @param priority - The I/O priority of the copy and deletion.
+		 * @throws IOException When an I/O error occurs when copying or deleting a file or directory.
+		 */
+		private static void copyThenDelete(File from, File to, Priority priority) throws IOException {
+			
+			// Create the target directories and collect the files to copy.
+			List<Callable<Void>> copyTasks = new ArrayList<>();
+			Set<Path> targetDirs = new LinkedHashSet<>();
+			collectCopyTasks(from, to, priority, FileMetrics.getCurrentFunction(), copyTasks, targetDirs);
+			
+			// Copy the files in parallel.
+			try {
+				for(Future<Void> future : PARALLEL_IO_EXECUTOR.invokeAll(copyTasks)) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while copying: '" + from.getAbsolutePath() + "'.");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				throw (cause instanceof IOException ? (IOException) cause : new IOException(cause));
+			}
+			
+			// Force the new directory entries to disk, so that they are never lost while the deletion is not.
+			for(Path dir : targetDirs) {
+				FileChannel channel;
+				try {
+					channel = FileChannel.open(dir, StandardOpenOption.READ);
+				} catch (IOException e) {
+					continue; // Directories cannot be opened on all platforms.
+				}
+				try {
+					channel.force(true);
+				} finally {
+					channel.close();
+				}
+			}
+			
+			// Delete the source.
+			if(!chf_delete.deleteFile(from, priority, null)) {
+				throw new IOException("Could not delete (some) file(s) from: '" + from.getAbsolutePath() + "'.");
+			}
+		}
+		
+		private static void collectCopyTasks(File from, File to, Priority priority, FunctionMetrics metrics,
+				List<Callable<Void>> copyTasks, Set<Path> targetDirs) throws IOException {
+			BasicFileAttributes attrs = Files.readAttributes(
+					from.toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			targetDirs.add(to.getAbsoluteFile().getParentFile().toPath());
+			if(!attrs.isDirectory()) {
+				copyTasks.add(() -> {
+					Path tempPath = to.toPath().resolveSibling("." + to.getName() + ".chfmove.tmp");
+					FunctionMetrics previousMetrics = FileMetrics.setCurrentFunction(metrics);
+					boolean moved = false;
+					try {
+						if(attrs.isSymbolicLink()) {
+							IOThrottle.getInstance().acquire(priority, 1, 0);
+							Files.copy(from.toPath(), tempPath,
+									StandardCopyOption.REPLACE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+						} else {
+							IOThrottle.getInstance().copy(from.toPath(), tempPath, priority,
+									StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+							try(FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+								channel.force(true);
+							}
+							FileMetrics.addBytesRead(attrs.size());
+							FileMetrics.addBytesWritten(attrs.size());
+						}
+						Files.move(tempPath, to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+						moved = true;
+					} finally {
+						FileMetrics.setCurrentFunction(previousMetrics);
+						if(!moved) {
+							Files.deleteIfExists(tempPath);
+						}
+					}
+					return null;
+				});
+			} else {
+				if(!to.isDirectory() && !to.mkdir()) {
+					throw new IOException("Could not create directory: '" + to.getAbsolutePath() + "'.");
+				}
+				File[] subFroms = from.listFiles();
+				if(subFroms == null) {
+					throw new IOException("Could not list directory: '" + from.getAbsolutePath() + "'.");
+				}
+				for(File subFrom : subFroms) {
+					collectCopyTasks(subFrom, new File(to, subFrom.getName()),
+							priority, metrics, copyTasks, targetDirs);
+				}
+			}
+		}
+		
+		@Override
+		public String docs() {
+			return "void {fromPath, toPath, [allowOverwrite], [createRequiredDirs], [priority]}"
+					+ " Moves the file or directory (including contents) from the fromPath to the toPath."
+					+ " When moving a directory which's target already exists,"
+					+ " it will be merged with the existing directory. This also holds for subdirectories."
+					+ " toPath should contain the file or directory name of the moved file or directory,"
+					+ " and not just the directory in which to place it."
+					+ " The move is performed as an atomic rename when possible. When fromPath and toPath are on"
+					+ " different file systems, the files are copied and the originals are removed afterwards."
+					+ " If allowOverwrite is true, files will overwrite the file at their target location if they"
+					+ " already exist. Defaults to false."
+					+ " If createRequiredDirs is true, the parent directory of toPath will be created if it does not"
+					+ " yet exist. Defaults to false."
+					+ " priority is one of INTERACTIVE or BACKGROUND and determines how the move is rate limited when"
+					+ " an I/O throttle has been set using chf_io_throttle. Defaults to BACKGROUND."
+					+ " The paths are relative to the file that is being run, not CommandHelper."
+					+ " Throws a SecurityException if allowOverwrite is false and a file in toPath already exists."
+					+ " In that case, nothing is moved."
+					+ " Throws an IOException if createRequiredDirs is false and the parent directory of toPath does"
+					+ " not exist."
+					+ " If the file specified is not within base-dir (as specified in the preferences file),"
+					+ " a SecurityException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRESecurityException.class, CREIOException.class, CREFormatException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_copy_async extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {2, 3, 4, 5};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			File locationFrom = Static.GetFileFromArgument(args[0].val(), env, t, null);
+			File locationTo = Static.GetFileFromArgument(args[1].val(), env, t, null);
+			boolean overWrite = args.length >= 3 && ArgumentValidation.getBooleanObject(args[2], t);
+			boolean createTargetDirs = args.length >= 4 && ArgumentValidation.getBooleanObject(args[3], t);
+			CClosure callback = (args.length == 5 ? getCallback(args[4], t) : null);
+			checkSecurity(locationFrom, env, t);
+			checkSecurity(locationTo, env, t);
+			chf_copy.checkCopy(locationFrom, locationTo, createTargetDirs, t);
+			FileJob job = submitJob("COPY", (FileJob j) -> {
+				addJobTotal(locationFrom, true, j); // chf_copy copies the targets of symbolic links.
+				chf_copy.performCopy(locationFrom, locationTo, overWrite, Priority.BACKGROUND, j, t);
+			}, callback, env, t);
+			return new CInt(job.getId(), t);
+		}
+		
+		@Override
+		public String docs() {
+			return "int {fromPath, toPath, [allowOverwrite], [createRequiredDirs], [callback]}"
+					+ " Starts copying the file or directory (including contents) from the fromPath to the toPath in"
+					+ " the background and returns the id of the started job."
+					+ " The copy behaves like chf_copy with BACKGROUND priority."
+					+ " The progress of the job can be obtained using chf_job_status and the job can be cancelled"
+					+ " using chf_job_cancel. If given, the callback closure is called on the main thread with the"
+					+ " chf_job_status array of the job as argument when the job has completed, failed or has been"
+					+ " cancelled."
+					+ " The paths are relative to the file that is being run, not CommandHelper."
+					+ " Throws an IOException if fromPath does not exist, or if createRequiredDirs is false and the"
+					+ " parent directory of toPath does not exist."
+					+ " Errors that occur while copying are reported through chf_job_status."
+					+ " If the file specified is not within base-dir (as specified in the preferences file),"
+					+ " a SecurityException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRESecurityException.class, CREIOException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_delete_async extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1, 2, 3};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
+			boolean allowRemoveDirContent = args.length >= 2 && ArgumentValidation.getBooleanObject(args[1], t);
+			CClosure callback = (args.length == 3 ? getCallback(args[2], t) : null);
+			checkSecurity(location, env, t);
+			chf_delete.checkDelete(location, allowRemoveDirContent, t);
+			FileJob job = submitJob("DELETE", (FileJob j) -> {
+				addJobTotal(location, false, j);
+				chf_delete.performDelete(location, Priority.BACKGROUND, j, t);
+			}, callback, env, t);
+			return new CInt(job.getId(), t);
+		}
+		
+		@Override
+		public String docs() {
+			return "int {path, [allowRemoveDirContent], [callback]} Starts deleting the file or directory at the given"
+					+ " path in the background and returns the id of the started job."
+					+ " The deletion behaves like chf_delete with BACKGROUND priority."
+					+ " The progress of the job can be obtained using chf_job_status and the job can be cancelled"
+					+ " using chf_job_cancel. If given, the callback closure is called on the main thread with the"
+					+ " chf_job_status array of the job as argument when the job has completed, failed or has been"
+					+ " cancelled."
+					+ " The path is relative to the file that is being run, not CommandHelper."
+					+ " Throws a SecurityException If allowRemoveDirContent is false and the given file is a"
+					+ " non-empty directory."
+					+ " Throws an IOException if the file does not exist."
+					+ " Errors that occur while deleting are reported through chf_job_status."
+					+ " If the file specified is not within base-dir (as specified in the preferences file),"
+					+ " a SecurityException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRESecurityException.class, CREIOException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_job_status extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			return getJobStatus(getJob(args[0], t), t);
+		}
+		
+		@Override
+		public String docs() {
+			return "array {jobId} Returns an associative array containing the status of the job with the given id."
+					+ " Keys are: id, type (COPY or DELETE), state (RUNNING, COMPLETED, CANCELLED or FAILED),"
+					+ " error (the error message if the job failed, null otherwise), filesdone, totalfiles, bytesdone,"
+					+ " totalbytes, elapsed (in milliseconds), throughput (in bytes per second) and eta (the estimated"
+					+ " remaining time in milliseconds, or null if unknown). totalfiles and totalbytes are determined"
+					+ " when the job starts, so they can increase during the first moments of the job."
+					+ " Finished jobs are available for at least 10 minutes."
+					+ " Throws a NotFoundException if no job with the given id exists.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRENotFoundException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_job_cancel extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			return CBoolean.GenerateCBoolean(getJob(args[0], t).cancel(), t);
+		}
+		
+		@Override
+		public String docs() {
+			return "boolean {jobId} Requests the job with the given id to be cancelled."
+					+ " The job stops before processing its next file, so files that have already been copied or"
+					+ " deleted are not restored."
+					+ " Returns true if the job was still running, false if it had already finished."
+					+ " Throws a NotFoundException if no job with the given id exists.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRENotFoundException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_kv_open extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
+			checkSecurity(location, env, t);
+			if(location.isDirectory()) {
+				throw new CREIOException("Location is a directory: '" + location.getAbsolutePath() + "'.", t);
+			}
+			try {
+				return new CInt(KeyValueStore.open(location.toPath()).getId(), t);
+			} catch (IOException e) {
+				throw new CREIOException("Could not open key/value store. Message: " + e.getMessage(), t);
+			}
+		}
+		
+		@Override
+		public String docs() {
+			return "int {path} Opens the key/value store file at the given path, creating it if it does not exist."
+					+ " Returns a store id for use with the other chf_kv functions. If the store is already open,"
+					+ " the id of the already opened store is returned."
+					+ " The store is an append-only log with an in-memory index, so every key costs memory while the"
+					+ " store is open. Superseded values are removed in the background once they take up more than"
+					+ " half of the file, or when chf_kv_compact is called. Values are not forced to disk until the"
+					+ " store is compacted or closed, but an incomplete write at the end of the file (for example"
+					+ " due to a crash) is detected and removed when the store is opened. Other invalid data, such as"
+					+ " a corrupt record that is followed by more records, causes an IOException instead, leaving the"
+					+ " file unchanged. Existing files that are not a key/value store, for example YAML files, are"
+					+ " never modified and cause an IOException."
+					+ " The path is relative to the file that is being run, not CommandHelper."
+					+ " If the file specified is not within base-dir (as specified in the preferences file),"
+					+ " a SecurityException is thrown."
+					+ " If the location is a directory or the opening itself fails, an IOException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRESecurityException.class, CREIOException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_kv_get extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {2};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			KeyValueStore store = getKeyValueStore(args[0], t);
+			try {
+				String value = store.get(args[1].val());
+				return (value == null ? CNull.NULL : new CString(value, t));
+			} catch (IOException e) {
+				throw new CREIOException("Could not read from key/value store. Message: " + e.getMessage(), t);
+			}
+		}
+		
+		@Override
+		public String docs() {
+			return "string {storeId, key} Returns the value for the given key in the given key/value store,"
+					+ " or null if the key does not exist."
+					+ " Throws a NotFoundException if no open store with the given id exists."
+					+ " If the reading itself fails, an IOException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRENotFoundException.class, CREIOException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_kv_put extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {3};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			KeyValueStore store = getKeyValueStore(args[0], t);
+			try {
+				store.put(args[1].val(), args[2].val());
+			} catch (IOException e) {
+				throw new CREIOException("Could not write to key/value store. Message: " + e.getMessage(), t);
+			}
+			return CVoid.VOID;
+		}
+		
+		@Override
+		public String docs() {
+			return "void {storeId, key, value} Sets the value for the given key in the given key/value store."
+					+ " Throws a NotFoundException if no open store with the given id exists."
+					+ " If the writing itself fails, an IOException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRENotFoundException.class, CREIOException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_kv_delete extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {2};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			KeyValueStore store = getKeyValueStore(args[0], t);
+			try {
+				return CBoolean.GenerateCBoolean(store.delete(args[1].val()), t);
+			} catch (IOException e) {
+				throw new CREIOException("Could not write to key/value store. Message: " + e.getMessage(), t);
+			}
+		}
+		
+		@Override
+		public String docs() {
+			return "boolean {storeId, key} Removes the given key from the given key/value store."
+					+ " Returns true if the key existed, false otherwise."
+					+ " Throws a NotFoundException if no open store with the given id exists."
+					+ " If the writing itself fails, an IOException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRENotFoundException.class, CREIOException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_kv_compact extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			KeyValueStore store = getKeyValueStore(args[0], t);
+			try {
+				store.compact();
+			} catch (IOException e) {
+				throw new CREIOException("Could not compact key/value store. Message: " + e.getMessage(), t);
+			}
+			return CVoid.VOID;
+		}
+		
+		@Override
+		public String docs() {
+			return "void {storeId} Rewrites the file of the given key/value store, removing superseded values and"
+					+ " forcing it to disk. Reads and writes can continue while the store is being compacted."
+					+ " Throws a NotFoundException if no open store with the given id exists."
+					+ " If the compaction itself fails, an IOException is thrown and the store is left unchanged.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRENotFoundException.class, CREIOException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_kv_close extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			KeyValueStore store = getKeyValueStore(args[0], t);
+			try {
+				store.close();
+			} catch (IOException e) {
+				throw new CREIOException("Could not close key/value store. Message: " + e.getMessage(), t);
+			}
+			return CVoid.VOID;
+		}
+		
+		@Override
+		public String docs() {
+			return "void {storeId} Forces the given key/value store to disk and closes it."
+					+ " Afterwards, the store id can no longer be used."
+					+ " Throws a NotFoundException if no open store with the given id exists."
+					+ " If the closing itself fails, an IOException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRENotFoundException.class, CREIOException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_tail extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {2, 3};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
+			checkSecurity(location, env, t);
+			if(location.isDirectory()) {
+				throw new CREIOException("Location is a directory: '" + location.getAbsolutePath() + "'.", t);
+			}
+			CClosure callback = getCallback(args[1], t);
+			long fromOffset = -1;
+			if(args.length >= 3 && !(args[2] instanceof CNull)) {
+				fromOffset = ArgumentValidation.getInt(args[2], t);
+				if(fromOffset < 0) {
+					throw new CRERangeException("The offset cannot be negative.", t);
+				}
+			}
+			DaemonManager daemonManager = env.getEnv(GlobalEnv.class).GetDaemonManager();
+			FileTailer tailer = FileTailer.start(location.toPath(), fromOffset, (List<String> lines, long offset) -> {
+				CArray linesArray = new CArray(t, lines.size());
+				for(String line : lines) {
+					linesArray.push(new CString(line, t), t);
+				}
+				StaticLayer.GetConvertor().runOnMainThreadLater(daemonManager,
+						() -> callback.executeCallable(linesArray, new CInt(offset, t)));
+			});
+			return new CInt(tailer.getId(), t);
+		}
+		
+		@Override
+		public String docs() {
+			return "int {path, callback, [fromOffset]} Follows the file at the given path, calling the callback on the"
+					+ " main thread with an array of new complete lines and the offset in the file directly after"
+					+ " these lines, whenever lines are appended to the file. Lines are passed without line"
+					+ " terminators. The file is polled every " + FileTailer.POLL_INTERVAL_MILLIS + " milliseconds,"
+					+ " and only bytes after the last read offset are read."
+					+ " Reading starts at fromOffset, or at the current end of the file when fromOffset is null or"
+					+ " not given. Passing an offset received by the callback continues after the lines that have"
+					+ " already been handled. When the file shrinks below the read offset (truncation), reading"
+					+ " restarts at the start of the file. When the file is replaced by a different file (rotation),"
+					+ " the remaining lines of the old file are passed first, including a trailing line without line"
+					+ " terminator, after which the new file is followed from its start."
+					+ " The file does not have to exist yet."
+					+ " Returns a subscription id which can be passed to chf_tail_stop."
+					+ " The path is relative to the file that is being run, not CommandHelper."
+					+ " If the file specified is not within base-dir (as specified in the preferences file),"
+					+ " a SecurityException is thrown."
+					+ " If the location is a directory, an IOException is thrown."
+					+ " If fromOffset is negative, a RangeException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRESecurityException.class, CREIOException.class, CRECastException.class,
+					CRERangeException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_tail_stop extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			FileTailer tailer = FileTailer.get(ArgumentValidation.getInt32(args[0], t));
+			if(tailer == null) {
+				throw new CRENotFoundException("No tail subscription exists with id: " + args[0].val() + ".", t);
+			}
+			tailer.stop();
+			return CVoid.VOID;
+		}
+		
+		@Override
+		public String docs() {
+			return "void {subscriptionId} Stops following the file of the given chf_tail subscription."
+					+ " Batches of lines that have already been read may still be passed to the callback."
+					+ " Throws a NotFoundException if no subscription with the given id exists.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class, CRENotFoundException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_stats extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {0, 1};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			boolean reset = (args.length == 1 && ArgumentValidation.getBooleanObject(args[0], t));
+			CArray ret = CArray.GetAssociativeArray(t);
+			for(FileMetrics.Snapshot snapshot : FileMetrics.getInstance().snapshot(reset)) {
+				CArray stats = CArray.GetAssociativeArray(t);
+				stats.set("count", new CInt(snapshot.count, t), t);
+				stats.set("errors", new CInt(snapshot.errors, t), t);
+				stats.set("bytesread", new CInt(snapshot.bytesRead, t), t);
+				stats.set("byteswritten", new CInt(snapshot.bytesWritten, t), t);
+				stats.set("mean", new CDouble(snapshot.meanNanos / 1_000_000d, t), t);
+				stats.set("p50", new CDouble(snapshot.p50Nanos / 1_000_000d, t), t);
+				stats.set("p99", new CDouble(snapshot.p99Nanos / 1_000_000d, t), t);
+				stats.set("max", new CDouble(snapshot.maxNanos / 1_000_000d, t), t);
+				ret.set(snapshot.functionName, stats, t);
+			}
+			return ret;
+		}
+		
+		@Override
+		public String docs() {
+			return "array {[reset]} Returns an associative array containing the metrics of every CHFile function that"
+					+ " has been called, keyed by function name. The metrics of a function are an associative array"
+					+ " with keys: count, errors (the amount of calls that threw an exception), bytesread,"
+					+ " byteswritten, mean, p50, p99 and max. The latencies are in milliseconds, and p50 and p99 have"
+					+ " a relative error of at most 12.5%. Bytes are only counted for the functions that read or write"
+					+ " file contents. Bytes of background jobs, such as those of chf_copy_async, are counted for the"
+					+ " function that started the job. Calls of this function are included in the metrics as well."
+					+ " If reset is true, all metrics are reset after they have been returned. Defaults to false.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRECastException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	@api
+	public static class chf_stats_dump extends FileFunction {
+		
+		@Override
+		public Integer[] numArgs() {
+			return new Integer[] {1, 2};
+		}
+		
+		@Override
+		public Mixed exec(Target t, Environment env, Mixed... args) throws ConfigRuntimeException {
+			if(args[0] instanceof CNull) {
+				FileMetrics.getInstance().configureDump(null, 0);
+				return CVoid.VOID;
+			}
+			File location = Static.GetFileFromArgument(args[0].val(), env, t, null);
+			checkSecurity(location, env, t);
+			if(location.isDirectory()) {
+				throw new CREIOException("Location is a directory: '" + location.getAbsolutePath() + "'.", t);
+			}
+			long intervalSeconds = (args.length == 2 ? ArgumentValidation.getInt(args[1], t) : 60);
+			if(intervalSeconds <= 0) {
+				throw new CRERangeException("The interval has to be positive.", t);
+			}
+			FileMetrics.getInstance().configureDump(location.toPath(), intervalSeconds);
+			return CVoid.VOID;
+		}
+		
+		@Override
+		public String docs() {
+			return "void {path, [intervalSeconds]} Periodically appends the metrics returned by chf_stats to the file"
+					+ " at the given path, without resetting them. Every dump appends one tab separated line per"
+					+ " function with the columns: time (in milliseconds since epoch), function, count, errors,"
+					+ " bytesread, byteswritten, mean, p50, p99 and max, where latencies are in nanoseconds."
+					+ " A header line is written when the file is created. intervalSeconds defaults to 60."
+					+ " Passing null as path stops the periodic dump."
+					+ " The path is relative to the file that is being run, not CommandHelper."
+					+ " If the file specified is not within base-dir (as specified in the preferences file),"
+					+ " a SecurityException is thrown."
+					+ " If the location is a directory, an IOException is thrown."
+					+ " If intervalSeconds is not positive, a RangeException is thrown.";
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Class<? extends CREThrowable>[] thrown() {
+			return new Class[] {CRESecurityException.class, CREIOException.class, CRECastException.class,
+					CRERangeException.class};
+		}
+		
+		@Override
+		public Version since() {
+			return MSVersion.V3_3_4;
+		}
+	}
+	
+	/**
+	 * Submits a background file job. When given, the callback is called on the main thread with the job status
+	 * when the job has finished, unless the job has been abandoned because the extension is being unloaded.
+	 * Bytes read and written by the job are attributed to the function that submits it.
+	 * @param type - The job type.
+	 * @param task - The task to run.
+	 * @param callback - The callback, or {@code null}.
+	 * @param env - The environment.
+	 * @param t - The target.
+	 * @return The submitted job.
+	 */
+	private static FileJob submitJob(String type, FileJob.Task task, CClosure callback, Environment env, Target t) {
+		DaemonManager daemonManager = env.getEnv(GlobalEnv.class).GetDaemonManager();
+		FunctionMetrics metrics = FileMetrics.getCurrentFunction();
+		AtomicBoolean activated = new AtomicBoolean(false);
+		return FileJob.submit(type, (FileJob job) -> {
+			daemonManager.activateThread(Thread.currentThread());
+			activated.set(true);
+			FunctionMetrics previousMetrics = FileMetrics.setCurrentFunction(metrics);
+			try {
+				task.run(job);
+			} finally {
+				FileMetrics.setCurrentFunction(previousMetrics);
+			}
+		}, (FileJob job) -> {
+			try {
+				if(callback != null && !job.isAbandoned()) {
+					StaticLayer.GetConvertor().runOnMainThreadLater(daemonManager,
+							() -> callback.executeCallable(getJobStatus(job, t)));
+				}
+			} finally {
+				
+				// The thread is only activated when the job has started, which it doesn't when cancelled early.
+				if(activated.get()) {
+					daemonManager.deactivateThread(Thread.currentThread());
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Adds the amount of files and bytes in the given file or directory to the total of the given job.
+	 * Symbolic links are only followed when the job follows them too, so that the totals match the work done.
+	 * A symbolic link that is not followed counts as a file without bytes.
+	 * @param file - The file or directory.
+	 * @param followLinks - Whether to follow symbolic links.
+	 * @param job - The job.
+	 */
+	private static void addJobTotal(File file, boolean followLinks, FileJob job) {
+		BasicFileAttributes attrs;
+		try {
+			attrs = (followLinks ? Files.readAttributes(file.toPath(), BasicFileAttributes.class)
+					: Files.readAttributes(file.toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+		} catch (IOException e) {
+			return; // The file does not exist or is inaccessible. The job itself will handle this.
+		}
+		if(attrs.isDirectory()) {
+			File[] subFiles = file.listFiles();
+			if(subFiles != null) {
+				for(File subFile : subFiles) {
+					job.checkCancelled();
+					addJobTotal(subFile, followLinks, job);
+				}
+			}
+		} else if(attrs.isRegularFile()) {
+			job.addTotal(1, attrs.size());
+		} else if(attrs.isSymbolicLink()) {
+			job.addTotal(1, 0);
+		}
+	}
+	
+	private static FileJob getJob(Mixed arg, Target t) throws CRENotFoundException {
+		FileJob job = FileJob.get(ArgumentValidation.getInt32(arg, t));
+		if(job == null) {
+			throw new CRENotFoundException("No job exists with id: " + arg.val() + ".", t);
+		}
+		return job;
+	}
+	
+	private static CArray getJobStatus(FileJob job, Target t) {
+		CArray ret = CArray.GetAssociativeArray(t);
+		ret.set("id", new CInt(job.getId(), t), t);
+		ret.set("type", new CString(job.getType(), t), t);
+		ret.set("state", new CString(job.getState().name(), t), t);
+		String errorMessage = job.getErrorMessage();
+		ret.set("error", (errorMessage == null ? CNull.NULL : new CString(errorMessage, t)), t);
+		ret.set("filesdone", new CInt(job.getFilesDone(), t), t);
+		ret.set("totalfiles", new CInt(job.getTotalFiles(), t), t);
+		ret.set("bytesdone", new CInt(job.getBytesDone(), t), t);
+		ret.set("totalbytes", new CInt(job.getTotalBytes(), t), t);
+		ret.set("elapsed", new CInt(job.getElapsedMillis(), t), t);
+		ret.set("throughput", new CDouble(job.getThroughput(), t), t);
+		long eta = job.getEtaMillis();
+		ret.set("eta", (eta == -1 ? CNull.NULL : new CInt(eta, t)), t);
+		return ret;
+	}
+	
+	private static CClosure getCallback(Mixed arg, Target t) throws CRECastException {
+		if(!(arg instanceof CClosure)) {
+			throw new CRECastException("Expected the callback to be a closure, but got: " + arg.val() + ".", t);
+		}
+		return (CClosure) arg;
+	}
+	
+	private static KeyValueStore getKeyValueStore(Mixed arg, Target t) throws CRENotFoundException {
+		KeyValueStore store = KeyValueStore.get(ArgumentValidation.getInt32(arg, t));
+		if(store == null) {
+			throw new CRENotFoundException("No open key/value store exists with id: " + arg.val() + ".", t);
+		}
+		return store;
+	}
+	
+	/**
+	 * Gets the I/O priority from the given argument.
+	 * @param arg - The argument, being one of 'INTERACTIVE' or 'BACKGROUND'.
+	 * @param t - The target.
+	 * @return The I/O priority.
+	 * @throws CREFormatException - If the argument is not a valid I/O priority.
+	 */
+	public static Priority getPriority(Mixed arg, Target t) throws CREFormatException {
+		try {
+			return Priority.valueOf(arg.val().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new CREFormatException("The I/O priority has to be one of 'INTERACTIVE' or 'BACKGROUND'.", t);
+		}
+	}
+	
+	/**
+	 * Resolves the given paths, checks whether they may be accessed and performs the given lookup for each of them.
+	 * The lookups are performed grouped by parent directory for locality, and access is checked once per parent
+	 * directory using {@link #checkSecurity(List, Environment, Target)}.
+	 * @param paths - The paths.
+	 * @param env - The environment.
+	 * @param t - The target.
+	 * @param lookup - The lookup to perform for every path.
+	 * @return An array containing the lookup results in the order of the given paths.
+	 * @throws CRESecurityException - If the security manager disallows usage of one of the files.
+	 * @throws CREIOException - If an I/O error occurs while resolving a canonical file path.
+	 */
+	private static CArray bulkLookup(CArray paths, Environment env, Target t, Function<File, Mixed> lookup)
+			throws CRESecurityException, CREIOException {
+		
+		// Resolve the paths and sort them by parent directory.
+		List<File> files = new ArrayList<>();
+		for(Mixed path : paths.asList()) {
+			File file = Static.GetFileFromArgument(path.val(), env, t, null);
+			files.add(file.toPath().toAbsolutePath().normalize().toFile());
+		}
+		Integer[] order = new Integer[files.size()];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparing((Integer i) -> String.valueOf(files.get(i).getParent())));
+		List<File> sortedFiles = new ArrayList<>(order.length);
+		for(int i : order) {
+			sortedFiles.add(files.get(i));
+		}
+		checkSecurity(sortedFiles, env, t);
+		
+		// Perform the lookups.
+		Mixed[] results = new Mixed[order.length];
+		for(int i : order) {
+			results[i] = lookup.apply(files.get(i));
+		}
+		CArray ret = new CArray(t);
+		for(Mixed result : results) {
+			ret.push(result, t);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Checks whether the given files may be accessed according to the security manager. In cmdline mode, this is
+	 * always allowed. Access is checked once per distinct parent directory. A file that is not a symbolic link is
+	 * accessible when its parent directory is, so only symbolic links and files in inaccessible directories are
+	 * checked separately.
+	 * @param files - The files to check. These should be absolute and normalized.
+	 * @param env - The environment.
+	 * @param t - The target.
+	 * @throws CRESecurityException - If the security manager disallows usage of one of the files.
+	 * @throws CREIOException - If an I/O error occurs while resolving a canonical file path.
+	 */
+	public static void checkSecurity(List<File> files, Environment env, Target t)
+			throws CRESecurityException, CREIOException {
+		if(Static.InCmdLine(env, false)) {
+			return;
+		}
+		Map<File, Boolean> dirAccess = new HashMap<>();
+		try {
+			for(File file : files) {
+				File parent = file.getParentFile();
+				Boolean parentAccessible = (parent == null ? Boolean.FALSE : dirAccess.get(parent));
+				if(parentAccessible == null) {
+					parentAccessible = Security.CheckSecurity(parent);
+					dirAccess.put(parent, parentAccessible);
+				}
+				if((!parentAccessible || Files.isSymbolicLink(file.toPath())) && !Security.CheckSecurity(file)) {
+					throw new CRESecurityException(
+							"You do not have permission to access file: '" + file.getAbsolutePath() + "'", t);
+				}
+			}
+		} catch (IOException e) {
+			throw new CREIOException(e.getMessage(), t);
+		}
+	}
+	
 	/**
 	 * Checks whether the given file may be accessed according to the security manager. In cmdline mode, this is always
 	 * allowed.
@@ -0,0 +1,131 @@
+package io.github.pieter12345.chfile;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileFinder} pruning and stopping.
+ * @author P.J.S. Kools
+ */
+public class FileFinderTest {
+	
+	private Path tempDir;
+	
+	@Before
+	public void setup() throws IOException {
+		this.tempDir = Files.createTempDirectory("chfile-test");
+		this.createFile("a.txt");
+		this.createFile("a.dat");
+		this.createFile("dir1/b.txt");
+		this.createFile("dir1/dir2/c.txt");
+		this.createFile("dir1/dir2/dir3/d.txt");
+		this.createFile("skip/e.txt");
+		this.createFile("dir1/skip/f.txt");
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		List<Path> paths = new ArrayList<>();
+		try(Stream<Path> stream = Files.walk(this.tempDir)) {
+			stream.sorted(Comparator.reverseOrder()).forEach(paths::add);
+		}
+		for(Path path : paths) {
+			Files.delete(path);
+		}
+	}
+	
+	@Test
+	public void testFindAllMatches() throws Exception {
+		FileFinder finder = new FileFinder(this.tempDir, getMatcher("*.txt"), false);
+		assertEquals(toSet("a.txt", "dir1/b.txt", "dir1/dir2/c.txt", "dir1/dir2/dir3/d.txt",
+				"skip/e.txt", "dir1/skip/f.txt"), this.find(finder));
+	}
+	
+	@Test
+	public void testMaxDepth() throws Exception {
+		FileFinder finder = new FileFinder(this.tempDir, getMatcher("*.txt"), false);
+		finder.setMaxDepth(1);
+		assertEquals(toSet("a.txt"), this.find(finder));
+		finder.setMaxDepth(3);
+		assertEquals(toSet("a.txt", "dir1/b.txt", "dir1/dir2/c.txt", "skip/e.txt", "dir1/skip/f.txt"),
+				this.find(finder));
+		finder.setMaxDepth(0);
+		assertEquals(toSet(), this.find(finder));
+	}
+	
+	@Test
+	public void testExcludedDirsArePruned() throws Exception {
+		FileFinder finder = new FileFinder(this.tempDir, getMatcher("*.txt"), false);
+		finder.addExcludedDir(getMatcher("skip"));
+		assertEquals(toSet("a.txt", "dir1/b.txt", "dir1/dir2/c.txt", "dir1/dir2/dir3/d.txt"), this.find(finder));
+		
+		// Excluding a directory also excludes everything below it.
+		finder.addExcludedDir(getMatcher("dir2"));
+		assertEquals(toSet("a.txt", "dir1/b.txt"), this.find(finder));
+	}
+	
+	@Test
+	public void testMatchRelativePath() throws Exception {
+		FileFinder finder = new FileFinder(this.tempDir, getMatcher("dir1/*/*.txt"), true);
+		assertEquals(toSet("dir1/dir2/c.txt", "dir1/skip/f.txt"), this.find(finder));
+	}
+	
+	@Test
+	public void testHandlerStopsSearch() throws Exception {
+		for(int i = 0; i < 100; i++) {
+			this.createFile("many" + (i % 10) + "/file" + i + ".txt");
+		}
+		FileFinder finder = new FileFinder(this.tempDir, getMatcher("*.txt"), false);
+		AtomicInteger handledCount = new AtomicInteger();
+		finder.find((Path file) -> handledCount.incrementAndGet() < 3);
+		assertEquals(3, handledCount.get());
+		
+		// A stopped finder can be used for another search.
+		handledCount.set(0);
+		finder.find((Path file) -> handledCount.incrementAndGet() > 0);
+		assertEquals(106, handledCount.get());
+	}
+	
+	private Set<String> find(FileFinder finder) throws IOException, InterruptedException {
+		Set<String> matches = new TreeSet<>();
+		finder.find((Path file) -> {
+			matches.add(this.tempDir.relativize(file).toString().replace('\\', '/'));
+			return true;
+		});
+		return matches;
+	}
+	
+	private void createFile(String relativePath) throws IOException {
+		Path file = this.tempDir.resolve(relativePath);
+		Files.createDirectories(file.getParent());
+		Files.createFile(file);
+	}
+	
+	private static PathMatcher getMatcher(String glob) {
+		return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+	}
+	
+	private static Set<String> toSet(String... values) {
+		Set<String> set = new TreeSet<>();
+		for(String value : values) {
+			set.add(value);
+		}
+		return set;
+	}
+}
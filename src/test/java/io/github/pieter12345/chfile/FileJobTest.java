@@ -0,0 +1,102 @@
+package io.github.pieter12345.chfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.github.pieter12345.chfile.FileJob.State;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileJob} completion and cancellation.
+ * @author P.J.S. Kools
+ */
+public class FileJobTest {
+	
+	@Test
+	public void testCompletedJob() throws Exception {
+		CompletableFuture<FileJob> completion = new CompletableFuture<>();
+		FileJob job = FileJob.submit("test", (FileJob j) -> {
+			j.addTotal(2, 20);
+			j.fileDone(10);
+			j.fileDone(10);
+		}, completion::complete);
+		
+		assertSame(job, completion.get(5, TimeUnit.SECONDS));
+		assertEquals(State.COMPLETED, job.getState());
+		assertEquals(2, job.getFilesDone());
+		assertEquals(20, job.getBytesDone());
+		assertEquals(0, job.getEtaMillis());
+		assertNull(job.getErrorMessage());
+		assertSame(job, FileJob.get(job.getId()));
+		assertFalse(job.cancel());
+	}
+	
+	@Test
+	public void testFailedJob() throws Exception {
+		CompletableFuture<FileJob> completion = new CompletableFuture<>();
+		FileJob job = FileJob.submit("test", (FileJob j) -> {
+			throw new IOException("Test failure.");
+		}, completion::complete);
+		
+		completion.get(5, TimeUnit.SECONDS);
+		assertEquals(State.FAILED, job.getState());
+		assertEquals("Test failure.", job.getErrorMessage());
+	}
+	
+	@Test
+	public void testCancelRunningJob() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture<FileJob> completion = new CompletableFuture<>();
+		FileJob job = FileJob.submit("test", (FileJob j) -> {
+			started.countDown();
+			while(true) {
+				j.checkCancelled();
+				Thread.sleep(1);
+				j.fileDone(1);
+			}
+		}, completion::complete);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		
+		assertTrue(job.cancel());
+		completion.get(5, TimeUnit.SECONDS);
+		assertEquals(State.CANCELLED, job.getState());
+		assertFalse(job.isAbandoned());
+		
+		// A cancelled job stops at its next check, so its progress no longer changes.
+		long filesDone = job.getFilesDone();
+		Thread.sleep(20);
+		assertEquals(filesDone, job.getFilesDone());
+	}
+	
+	@Test
+	public void testCancelAllAbandonsRunningJobs() throws Exception {
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch completed = new CountDownLatch(2);
+		FileJob.Task task = (FileJob j) -> {
+			started.countDown();
+			while(true) {
+				j.checkCancelled();
+				Thread.sleep(1);
+			}
+		};
+		FileJob job1 = FileJob.submit("test", task, (FileJob j) -> completed.countDown());
+		FileJob job2 = FileJob.submit("test", task, (FileJob j) -> completed.countDown());
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		
+		FileJob.cancelAll();
+		assertTrue(completed.await(5, TimeUnit.SECONDS));
+		for(FileJob job : new FileJob[] {job1, job2}) {
+			assertEquals(State.CANCELLED, job.getState());
+			assertTrue(job.isAbandoned());
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package io.github.pieter12345.chfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.github.pieter12345.chfile.FileMetrics.FunctionMetrics;
+import io.github.pieter12345.chfile.FileMetrics.Snapshot;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileMetrics} counters and latency histogram buckets.
+ * @author P.J.S. Kools
+ */
+public class FileMetricsTest {
+	
+	private static final String FUNCTION_NAME = "test_function";
+	
+	@Test
+	public void testSmallValuesAreExact() {
+		for(long nanos = 0; nanos < 16; nanos++) {
+			assertEquals(nanos, getRecordedPercentile(nanos));
+		}
+	}
+	
+	@Test
+	public void testBucketBoundaries() {
+		
+		// From 16 on, buckets span multiple values and percentiles are reported as the bucket midpoint.
+		assertEquals(17, getRecordedPercentile(16));
+		assertEquals(17, getRecordedPercentile(17));
+		assertEquals(19, getRecordedPercentile(18));
+		assertEquals(31, getRecordedPercentile(31));
+		assertEquals(34, getRecordedPercentile(32));
+		assertEquals(34, getRecordedPercentile(35));
+		assertEquals(38, getRecordedPercentile(36));
+		assertEquals(992, getRecordedPercentile(960));
+		assertEquals(992, getRecordedPercentile(1023));
+		assertEquals(1088, getRecordedPercentile(1024));
+		
+		// Negative durations are recorded as 0, and the largest duration fits in the last bucket.
+		assertEquals(0, getRecordedPercentile(-1));
+		assertEquals((15L << 59) + (1L << 58), getRecordedPercentile(Long.MAX_VALUE));
+	}
+	
+	@Test
+	public void testRelativeError() {
+		for(long nanos = 1; nanos > 0 && nanos < Long.MAX_VALUE / 2; nanos = nanos * 3 / 2 + 1) {
+			long percentile = getRecordedPercentile(nanos);
+			assertTrue(nanos + " -> " + percentile, Math.abs(percentile - nanos) <= nanos / 8);
+		}
+	}
+	
+	@Test
+	public void testSnapshot() {
+		FunctionMetrics metrics = FileMetrics.getInstance().getFunctionMetrics(FUNCTION_NAME);
+		for(int i = 0; i < 98; i++) {
+			metrics.record(100, true);
+		}
+		metrics.record(1000000, false);
+		metrics.record(2000000, false);
+		
+		Snapshot snapshot = takeSnapshot();
+		assertEquals(100, snapshot.count);
+		assertEquals(2, snapshot.errors);
+		assertEquals((98 * 100 + 3000000) / 100, snapshot.meanNanos);
+		assertEquals(100, snapshot.p50Nanos);
+		assertTrue(Math.abs(snapshot.p99Nanos - 1000000) <= 1000000 / 8);
+		assertEquals(2000000, snapshot.maxNanos);
+		
+		// Functions without calls since the last reset are not included in snapshots.
+		assertNull(takeSnapshot());
+	}
+	
+	private static long getRecordedPercentile(long nanos) {
+		FileMetrics.getInstance().getFunctionMetrics(FUNCTION_NAME).record(nanos, true);
+		Snapshot snapshot = takeSnapshot();
+		assertEquals(snapshot.p50Nanos, snapshot.p99Nanos);
+		return snapshot.p50Nanos;
+	}
+	
+	private static Snapshot takeSnapshot() {
+		for(Snapshot snapshot : FileMetrics.getInstance().snapshot(true)) {
+			if(snapshot.functionName.equals(FUNCTION_NAME)) {
+				return snapshot;
+			}
+		}
+		return null;
+	}
+}
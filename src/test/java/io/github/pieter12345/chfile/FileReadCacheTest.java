@@ -0,0 +1,121 @@
+package io.github.pieter12345.chfile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileReadCache} validation and eviction.
+ * @author P.J.S. Kools
+ */
+public class FileReadCacheTest {
+	
+	private Path tempDir;
+	private FileReadCache cache;
+	
+	@Before
+	public void setup() throws IOException {
+		this.tempDir = Files.createTempDirectory("chfile-test");
+		this.cache = FileReadCache.getInstance();
+		this.cache.configure(30, 30);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		this.cache.configure(0, 0);
+		for(String name : new String[] {"a", "b", "c", "d"}) {
+			Files.deleteIfExists(this.tempDir.resolve(name));
+		}
+		Files.delete(this.tempDir);
+	}
+	
+	@Test
+	public void testUnchangedFileIsServedFromCache() throws IOException {
+		File file = this.createFile("a", "0123456789");
+		this.cache.read(file);
+		assertArrayEquals(bytes("0123456789"), this.cache.read(file));
+		assertEquals(1, this.cache.getHits());
+		assertEquals(1, this.cache.getMisses());
+	}
+	
+	@Test
+	public void testChangedLastModifiedTimeInvalidatesEntry() throws IOException {
+		File file = this.createFile("a", "0123456789");
+		this.cache.read(file);
+		
+		// Change the contents without changing the size.
+		Files.write(file.toPath(), bytes("9876543210"));
+		Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(2000000000000L));
+		assertArrayEquals(bytes("9876543210"), this.cache.read(file));
+		assertEquals(0, this.cache.getHits());
+		assertEquals(2, this.cache.getMisses());
+	}
+	
+	@Test
+	public void testChangedSizeInvalidatesEntry() throws IOException {
+		File file = this.createFile("a", "0123456789");
+		this.cache.read(file);
+		
+		// Change the contents without changing the last modified time.
+		FileTime lastModified = Files.getLastModifiedTime(file.toPath());
+		Files.write(file.toPath(), bytes("01234"));
+		Files.setLastModifiedTime(file.toPath(), lastModified);
+		assertArrayEquals(bytes("01234"), this.cache.read(file));
+		assertEquals(0, this.cache.getHits());
+		assertEquals(2, this.cache.getMisses());
+		assertEquals(5, this.cache.getResidentBytes());
+	}
+	
+	@Test
+	public void testInvalidateRemovesEntry() throws IOException {
+		File file = this.createFile("a", "0123456789");
+		this.cache.read(file);
+		this.cache.invalidate(file);
+		assertEquals(0, this.cache.getEntryCount());
+		assertEquals(0, this.cache.getResidentBytes());
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedEntryIsEvicted() throws IOException {
+		File a = this.createFile("a", "0123456789");
+		File b = this.createFile("b", "0123456789");
+		File c = this.createFile("c", "0123456789");
+		File d = this.createFile("d", "0123456789");
+		this.cache.read(a);
+		this.cache.read(b);
+		this.cache.read(c);
+		
+		// Use a, so that b becomes the least recently used entry, then exceed the maximum size.
+		this.cache.read(a);
+		this.cache.read(d);
+		assertEquals(3, this.cache.getEntryCount());
+		assertEquals(30, this.cache.getResidentBytes());
+		
+		long hits = this.cache.getHits();
+		this.cache.read(a);
+		this.cache.read(c);
+		this.cache.read(d);
+		assertEquals(hits + 3, this.cache.getHits());
+		long misses = this.cache.getMisses();
+		this.cache.read(b);
+		assertEquals(misses + 1, this.cache.getMisses());
+	}
+	
+	private File createFile(String name, String content) throws IOException {
+		return Files.write(this.tempDir.resolve(name), bytes(content)).toFile();
+	}
+	
+	private static byte[] bytes(String str) {
+		return str.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,129 @@
+package io.github.pieter12345.chfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileTailer} reading, truncation and rotation.
+ * @author P.J.S. Kools
+ */
+public class FileTailerTest {
+	
+	private static final long TIMEOUT_MILLIS = 5000;
+	
+	private Path tempDir;
+	private Path file;
+	private Path rotatedFile;
+	private FileTailer tailer;
+	private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+	
+	@Before
+	public void setup() throws IOException {
+		this.tempDir = Files.createTempDirectory("chfile-test");
+		this.file = this.tempDir.resolve("test.log");
+		this.rotatedFile = this.tempDir.resolve("test.log.1");
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		if(this.tailer != null) {
+			this.tailer.stop();
+		}
+		Files.deleteIfExists(this.file);
+		Files.deleteIfExists(this.rotatedFile);
+		Files.delete(this.tempDir);
+	}
+	
+	@Test
+	public void testAppendedLines() throws Exception {
+		write(this.file, "old\n");
+		this.start(-1);
+		append(this.file, "a\r\nb\npartial");
+		assertEquals(Arrays.asList("a", "b"), this.takeLines(2));
+		
+		// A partial line is passed once it has been completed.
+		Thread.sleep(2 * FileTailer.POLL_INTERVAL_MILLIS);
+		assertNull(this.lines.poll());
+		append(this.file, " line\n");
+		assertEquals(Arrays.asList("partial line"), this.takeLines(1));
+	}
+	
+	@Test
+	public void testFileCreatedLater() throws Exception {
+		this.start(0);
+		Thread.sleep(FileTailer.POLL_INTERVAL_MILLIS);
+		write(this.file, "a\n");
+		assertEquals(Arrays.asList("a"), this.takeLines(1));
+	}
+	
+	@Test
+	public void testTruncation() throws Exception {
+		write(this.file, "first line\nsecond line\n");
+		this.start(0);
+		assertEquals(Arrays.asList("first line", "second line"), this.takeLines(2));
+		
+		// Reading restarts at the start of the file when it shrinks below the current offset.
+		write(this.file, "a\nb\n");
+		assertEquals(Arrays.asList("a", "b"), this.takeLines(2));
+		append(this.file, "c\n");
+		assertEquals(Arrays.asList("c"), this.takeLines(1));
+	}
+	
+	@Test
+	public void testRotation() throws Exception {
+		write(this.file, "a\n");
+		this.start(0);
+		assertEquals(Arrays.asList("a"), this.takeLines(1));
+		
+		// The remaining data of the old file is passed before the new file is read from its start.
+		append(this.file, "b");
+		Files.move(this.file, this.rotatedFile);
+		write(this.file, "first line of the new file\n");
+		assertEquals(Arrays.asList("b", "first line of the new file"), this.takeLines(2));
+		append(this.rotatedFile, "ignored\n");
+		append(this.file, "c\n");
+		assertEquals(Arrays.asList("c"), this.takeLines(1));
+	}
+	
+	private void start(long fromOffset) {
+		this.tailer = FileTailer.start(this.file, fromOffset, (List<String> lines, long offset) -> {
+			this.lines.addAll(lines);
+		});
+	}
+	
+	private List<String> takeLines(int count) throws InterruptedException {
+		List<String> result = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			String line = this.lines.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			if(line == null) {
+				break;
+			}
+			result.add(line);
+		}
+		return result;
+	}
+	
+	private static void write(Path file, String str) throws IOException {
+		Files.write(file, str.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static void append(Path file, String str) throws IOException {
+		Files.write(file, str.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+	}
+}
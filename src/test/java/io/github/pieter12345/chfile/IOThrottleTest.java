@@ -0,0 +1,123 @@
+package io.github.pieter12345.chfile;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.github.pieter12345.chfile.IOThrottle.Priority;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link IOThrottle} rate limiting and priorities.
+ * Timing assertions use generous margins, so that they do not fail on slow machines.
+ * @author P.J.S. Kools
+ */
+public class IOThrottleTest {
+	
+	private IOThrottle throttle;
+	
+	@Before
+	public void setup() {
+		this.throttle = IOThrottle.getInstance();
+	}
+	
+	@After
+	public void tearDown() {
+		this.throttle.configure(0, 0);
+	}
+	
+	@Test
+	public void testDisabledThrottleDoesNotWait() throws IOException {
+		this.throttle.configure(0, 0);
+		long startTime = System.nanoTime();
+		this.throttle.acquire(Priority.BACKGROUND, 1000000, Long.MAX_VALUE);
+		assertTrue(millisSince(startTime) < 100);
+	}
+	
+	@Test
+	public void testOpsRate() throws IOException {
+		this.throttle.configure(0, 20);
+		
+		// The bucket starts full, so the first second worth of operations does not wait.
+		long startTime = System.nanoTime();
+		for(int i = 0; i < 20; i++) {
+			this.throttle.acquire(Priority.BACKGROUND, 1, 0);
+		}
+		assertTrue(millisSince(startTime) < 200);
+		
+		// Further operations are limited to the configured rate.
+		startTime = System.nanoTime();
+		for(int i = 0; i < 10; i++) {
+			this.throttle.acquire(Priority.BACKGROUND, 1, 0);
+		}
+		long elapsedMillis = millisSince(startTime);
+		assertTrue("Elapsed: " + elapsedMillis, elapsedMillis >= 400 && elapsedMillis < 2000);
+	}
+	
+	@Test
+	public void testBytesRate() throws IOException {
+		this.throttle.configure(10000, 0);
+		
+		// Requests larger than the bucket are split, and the first bucket is available immediately.
+		long startTime = System.nanoTime();
+		this.throttle.acquire(Priority.BACKGROUND, 1, 15000);
+		long elapsedMillis = millisSince(startTime);
+		assertTrue("Elapsed: " + elapsedMillis, elapsedMillis >= 400 && elapsedMillis < 2000);
+	}
+	
+	@Test
+	public void testInteractiveDebtDelaysBackground() throws IOException {
+		this.throttle.configure(10000, 0);
+		
+		// Interactive callers never wait, even when they exceed the limit.
+		long startTime = System.nanoTime();
+		this.throttle.acquire(Priority.INTERACTIVE, 1, 15000);
+		assertTrue(millisSince(startTime) < 200);
+		
+		// Background callers wait until the debt has been repaid.
+		startTime = System.nanoTime();
+		this.throttle.acquire(Priority.BACKGROUND, 1, 1);
+		long elapsedMillis = millisSince(startTime);
+		assertTrue("Elapsed: " + elapsedMillis, elapsedMillis >= 400 && elapsedMillis < 2000);
+	}
+	
+	@Test
+	public void testInteractiveDoesNotWaitForBackground() throws Exception {
+		this.throttle.configure(0, 10);
+		this.throttle.acquire(Priority.BACKGROUND, 10, 0);
+		
+		// Start a background caller that has to wait for about a second.
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Long> future = executor.submit(() -> {
+				long startTime = System.nanoTime();
+				this.throttle.acquire(Priority.BACKGROUND, 10, 0);
+				return millisSince(startTime);
+			});
+			Thread.sleep(100);
+			
+			// Interactive callers are served while the background caller is waiting.
+			long startTime = System.nanoTime();
+			this.throttle.acquire(Priority.INTERACTIVE, 1, 0);
+			assertTrue(millisSince(startTime) < 200);
+			assertFalse(future.isDone());
+			
+			long backgroundMillis = future.get(5, TimeUnit.SECONDS);
+			assertTrue("Elapsed: " + backgroundMillis, backgroundMillis >= 800);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private static long millisSince(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1000000;
+	}
+}
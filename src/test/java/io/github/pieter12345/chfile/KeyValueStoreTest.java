@@ -0,0 +1,248 @@
+package io.github.pieter12345.chfile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link KeyValueStore} recovery and compaction.
+ * @author P.J.S. Kools
+ */
+public class KeyValueStoreTest {
+	
+	private static final int FILE_HEADER_SIZE = 8;
+	
+	private Path tempDir;
+	private Path file;
+	
+	@Before
+	public void setup() throws IOException {
+		this.tempDir = Files.createTempDirectory("chfile-test");
+		this.file = this.tempDir.resolve("store.kv");
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(this.file);
+		Files.deleteIfExists(this.tempDir.resolve("store.kv.compact"));
+		Files.delete(this.tempDir);
+	}
+	
+	@Test
+	public void testPartiallyWrittenRecordIsTruncated() throws IOException {
+		KeyValueStore store = KeyValueStore.open(this.file);
+		store.put("a", "value a");
+		store.put("b", "value b");
+		store.close();
+		long validSize = Files.size(this.file);
+		
+		// Append the header and part of the data of the last record, as if a write was interrupted.
+		byte[] content = Files.readAllBytes(this.file);
+		int recordSize = (content.length - FILE_HEADER_SIZE) / 2;
+		int tornSize = recordSize - 3;
+		byte[] tornContent = new byte[content.length + tornSize];
+		System.arraycopy(content, 0, tornContent, 0, content.length);
+		System.arraycopy(content, FILE_HEADER_SIZE + recordSize, tornContent, content.length, tornSize);
+		Files.write(this.file, tornContent);
+		
+		store = KeyValueStore.open(this.file);
+		try {
+			assertEquals(2, store.size());
+			assertEquals("value a", store.get("a"));
+			assertEquals("value b", store.get("b"));
+			assertEquals(validSize, Files.size(this.file));
+			
+			// Records appended after the recovery must be readable after reopening.
+			store.put("c", "value c");
+		} finally {
+			store.close();
+		}
+		store = KeyValueStore.open(this.file);
+		try {
+			assertEquals(3, store.size());
+			assertEquals("value c", store.get("c"));
+		} finally {
+			store.close();
+		}
+	}
+	
+	@Test
+	public void testCorruptLastRecordIsTruncated() throws IOException {
+		KeyValueStore store = KeyValueStore.open(this.file);
+		store.put("a", "value a");
+		store.put("b", "value b");
+		store.close();
+		
+		// Corrupt the value of the last record, as if its data was not written before a crash.
+		byte[] content = Files.readAllBytes(this.file);
+		content[content.length - 1] ^= 0xFF;
+		Files.write(this.file, content);
+		
+		store = KeyValueStore.open(this.file);
+		try {
+			assertEquals(1, store.size());
+			assertEquals("value a", store.get("a"));
+			assertNull(store.get("b"));
+		} finally {
+			store.close();
+		}
+	}
+	
+	@Test
+	public void testZeroFilledTailIsTruncated() throws IOException {
+		KeyValueStore store = KeyValueStore.open(this.file);
+		store.put("a", "value a");
+		store.put("b", "value b");
+		store.close();
+		long validSize = Files.size(this.file);
+		
+		// Append zero bytes, as left by a file system that extended the file before a crash.
+		Files.write(this.file, new byte[4096], StandardOpenOption.APPEND);
+		
+		store = KeyValueStore.open(this.file);
+		try {
+			assertEquals(2, store.size());
+			assertEquals("value a", store.get("a"));
+			assertEquals("value b", store.get("b"));
+			assertEquals(validSize, Files.size(this.file));
+		} finally {
+			store.close();
+		}
+	}
+	
+	@Test
+	public void testPartiallyWrittenRecordFollowedByZerosIsTruncated() throws IOException {
+		KeyValueStore store = KeyValueStore.open(this.file);
+		store.put("a", "value a");
+		store.put("b", "value b");
+		store.close();
+		
+		// Zero the end of the last record and append zero bytes, as if its last block was never written.
+		byte[] content = Files.readAllBytes(this.file);
+		byte[] tornContent = new byte[content.length + 4096];
+		System.arraycopy(content, 0, tornContent, 0, content.length - 3);
+		Files.write(this.file, tornContent);
+		
+		store = KeyValueStore.open(this.file);
+		try {
+			assertEquals(1, store.size());
+			assertEquals("value a", store.get("a"));
+			assertNull(store.get("b"));
+		} finally {
+			store.close();
+		}
+	}
+	
+	@Test
+	public void testOtherFileIsNotModified() throws IOException {
+		byte[] content = "key: value\nlist:\n  - a\n  - b\n".getBytes(StandardCharsets.UTF_8);
+		Files.write(this.file, content);
+		
+		try {
+			KeyValueStore.open(this.file).close();
+			fail("Opening a file that is not a key/value store should fail.");
+		} catch (IOException e) {
+			// Expected.
+		}
+		assertArrayEquals(content, Files.readAllBytes(this.file));
+	}
+	
+	@Test
+	public void testMidFileCorruptionFailsOpen() throws IOException {
+		KeyValueStore store = KeyValueStore.open(this.file);
+		store.put("a", "value a");
+		store.put("b", "value b");
+		store.put("c", "value c");
+		store.close();
+		
+		// Corrupt the last byte of the value of the first record.
+		byte[] content = Files.readAllBytes(this.file);
+		int firstRecordSize = (content.length - FILE_HEADER_SIZE) / 3;
+		content[FILE_HEADER_SIZE + firstRecordSize - 1] ^= 0xFF;
+		Files.write(this.file, content);
+		
+		try {
+			KeyValueStore.open(this.file).close();
+			fail("Opening a store with a corrupt record followed by more data should fail.");
+		} catch (IOException e) {
+			// Expected.
+		}
+		assertArrayEquals(content, Files.readAllBytes(this.file));
+	}
+	
+	@Test
+	public void testCompactionWithConcurrentPuts() throws Exception {
+		KeyValueStore store = KeyValueStore.open(this.file);
+		try {
+			
+			// Create garbage by overwriting every key a few times.
+			for(int round = 0; round < 5; round++) {
+				for(int i = 0; i < 500; i++) {
+					store.put("key" + i, "round " + round + " value " + i);
+				}
+			}
+			
+			// Compact repeatedly while other threads keep writing.
+			ExecutorService executor = Executors.newFixedThreadPool(3);
+			try {
+				List<Future<?>> futures = new ArrayList<>();
+				futures.add(executor.submit(() -> {
+					for(int i = 0; i < 10; i++) {
+						store.compact();
+					}
+					return null;
+				}));
+				for(int thread = 0; thread < 2; thread++) {
+					int threadId = thread;
+					futures.add(executor.submit(() -> {
+						for(int i = threadId; i < 500; i += 2) {
+							store.put("key" + i, "final value " + i);
+							store.put("new" + i, "new value " + i);
+						}
+						return null;
+					}));
+				}
+				for(Future<?> future : futures) {
+					future.get();
+				}
+			} finally {
+				executor.shutdown();
+			}
+			store.compact();
+			assertValues(store);
+		} finally {
+			store.close();
+		}
+		
+		KeyValueStore reopenedStore = KeyValueStore.open(this.file);
+		try {
+			assertValues(reopenedStore);
+		} finally {
+			reopenedStore.close();
+		}
+	}
+	
+	private static void assertValues(KeyValueStore store) throws IOException {
+		assertEquals(1000, store.size());
+		for(int i = 0; i < 500; i++) {
+			assertEquals("final value " + i, store.get("key" + i));
+			assertEquals("new value " + i, store.get("new" + i));
+		}
+	}
+}